@@ -0,0 +1,71 @@
+package com.invoice.generation.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+import com.invoice.generation.Service.AdmissionControl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/** Shared fixtures for the benchmarks: sample invoices and a template engine set up like Boot's. */
+final class BenchmarkInvoices {
+
+    private BenchmarkInvoices() {
+    }
+
+    static InvoiceDTO invoice(int itemCount) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.customerName = "Ananya Sen";
+        invoice.customerPhone = "9830000000";
+        invoice.customerAddress = "12 Lake Road, Kolkata";
+        invoice.customerEmail = "ananya@example.com";
+        invoice.invoiceStatus = "Placed";
+        invoice.ownerMessage = "Thank you for shopping with us!";
+        invoice.applyOverallDiscount = true;
+        invoice.overallDiscount = 5;
+        invoice.overallDiscountType = "PERCENT";
+        invoice.adjustmentAmount = 20;
+        invoice.adjustmentAmountType = "FLAT";
+        invoice.paymentMethod = "ONLINE";
+        invoice.paymentDetails = "UPI ref 1234567890";
+        invoice.issuedBy = "Diptimoy";
+
+        List<ItemDTO> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ItemDTO item = new ItemDTO();
+            item.name = "Hand-painted tote #" + i;
+            item.price = 349.5 + (i % 7) * 10;
+            item.quantity = 1 + i % 4;
+            item.discount = i % 3 == 0 ? 10 : 25;
+            item.discountType = i % 3 == 0 ? "PERCENT" : "FLAT";
+            items.add(item);
+        }
+        invoice.items = items;
+        return invoice;
+    }
+
+    /** No rate limit and more render permits than benchmark threads, so admission never blocks. */
+    static AdmissionControl admission(MeterRegistry registry) {
+        return new AdmissionControl(registry, 0, 1, 1, 1024, 0, 1024, Duration.ofMinutes(1), Duration.ofSeconds(1));
+    }
+
+    static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+}
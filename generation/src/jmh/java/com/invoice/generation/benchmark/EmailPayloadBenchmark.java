@@ -0,0 +1,65 @@
+package com.invoice.generation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.invoice.generation.Service.EmailPayloadEncoder;
+
+/**
+ * JSON encoding, AES encryption and base64 of an email carrying a PDF of the
+ * given size, as written into the outbox.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class EmailPayloadBenchmark {
+
+    @Param({"30000", "300000"})
+    int attachmentBytes;
+
+    private EmailPayloadEncoder encoder;
+    private Map<String, String> fields;
+    private byte[] attachment;
+
+    @Setup
+    public void setUp() {
+        encoder = new EmailPayloadEncoder("0123456789abcdef");
+
+        fields = new LinkedHashMap<>();
+        fields.put("to", "ananya@example.com");
+        fields.put("from", "The Tinkori Tales<billing@example.com>");
+        fields.put("subject", "Thank You | Ananya Sen | Placed | 01-01-2026 10:00");
+        fields.put("text", "Dear Ananya Sen,\n\nYour invoice has been attached to this email.");
+        fields.put("smtpUser", "billing@example.com");
+        fields.put("smtpPassword", "app-password");
+
+        attachment = new byte[attachmentBytes];
+        new Random(42).nextBytes(attachment);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder.write(fields, "invoice.pdf", new ByteArrayInputStream(attachment),
+                attachment.length, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,107 @@
+package com.invoice.generation.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+/**
+ * Closed-loop load on POST /invoice/generate of a running instance: a fixed
+ * number of clients each send their next request as soon as the previous one
+ * returns. Prints requests per second and latency percentiles, so two runs
+ * of the app (e.g. {@code VIRTUAL_THREADS=false} and {@code true}) can be
+ * compared.
+ * <p>
+ * Every request carries a different customer name so the PDF cache does not
+ * turn the run into a cache benchmark.
+ * <p>
+ * Arguments: base URL, concurrent clients, total requests, items per invoice.
+ */
+public final class GenerateLoadTest {
+
+    private GenerateLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int total = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int items = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        ObjectMapper json = new ObjectMapper();
+        HttpClient http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+        URI uri = URI.create(baseUrl + "/invoice/generate");
+
+        // warm-up: JIT, template and font caches
+        int warmup = Math.min(200, total / 5);
+        run(http, json, uri, clients, warmup, items, "warmup-");
+
+        long[] latencies = new long[total];
+        long start = System.nanoTime();
+        int errors = run(http, json, uri, clients, total, items, "load-", latencies);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, %d clients, %d items, %d errors%n", total, clients, items, errors);
+        System.out.printf("throughput: %.1f req/s%n", total / seconds);
+        System.out.printf("latency ms: p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90),
+                percentile(latencies, 0.99), latencies[total - 1] / 1e6);
+        System.exit(0);
+    }
+
+    private static int run(HttpClient http, ObjectMapper json, URI uri, int clients, int total,
+            int items, String prefix) throws InterruptedException {
+        return run(http, json, uri, clients, total, items, prefix, new long[total]);
+    }
+
+    private static int run(HttpClient http, ObjectMapper json, URI uri, int clients, int total,
+            int items, String prefix, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            pool.execute(() -> {
+                for (int i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                    long t0 = System.nanoTime();
+                    try {
+                        InvoiceDTO invoice = BenchmarkInvoices.invoice(items);
+                        invoice.customerName = prefix + i;
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .timeout(Duration.ofSeconds(60))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(invoice)))
+                                .build();
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - t0;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        return errors.get();
+    }
+
+    static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
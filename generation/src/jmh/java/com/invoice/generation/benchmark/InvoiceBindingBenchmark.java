@@ -0,0 +1,65 @@
+package com.invoice.generation.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.Service.InvoiceDeserializer;
+
+/**
+ * Reading a request body into an InvoiceDTO: Jackson's bean binding against
+ * InvoiceDeserializer. Run with {@code -prof gc} for bytes allocated per
+ * invoice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceBindingBenchmark {
+
+    @Param({"10", "1000"})
+    int items;
+
+    private byte[] body;
+    private ObjectReader beanBinding;
+    private ObjectReader streaming;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        body = mapper.writeValueAsBytes(BenchmarkInvoices.invoice(items));
+
+        beanBinding = mapper.readerFor(InvoiceDTO.class);
+        streaming = new ObjectMapper()
+                .registerModule(new SimpleModule().addDeserializer(InvoiceDTO.class,
+                        new InvoiceDeserializer(33554432, 100000, 10000)))
+                .readerFor(InvoiceDTO.class);
+    }
+
+    @Benchmark
+    public InvoiceDTO beanBinding() throws IOException {
+        return beanBinding.readValue(body);
+    }
+
+    @Benchmark
+    public InvoiceDTO streaming() throws IOException {
+        return streaming.readValue(body);
+    }
+}
@@ -0,0 +1,62 @@
+package com.invoice.generation.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.invoice.generation.Service.InvoiceNumbers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Invoice numbers taken by eight threads at once. A block size of 1 goes to
+ * the sequence file, lock and fsync included, for every number.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class InvoiceNumberBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int blockSize;
+
+    private Path dir;
+    private InvoiceNumbers numbers;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("invoice-numbers");
+        numbers = new InvoiceNumbers(new SimpleMeterRegistry(),
+                dir.resolve("invoice-number.seq").toString(), blockSize, "INV-");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("invoice-number.seq"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long next() {
+        return numbers.next();
+    }
+}
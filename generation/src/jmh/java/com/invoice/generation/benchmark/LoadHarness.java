@@ -0,0 +1,462 @@
+package com.invoice.generation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.GenerationApplication;
+import com.invoice.generation.Service.GoogleSheetsService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+
+/**
+ * End-to-end load test of POST /invoice/generate with nothing external: the
+ * app is started in this JVM against {@link StubServer}s for the email relay
+ * and the Sheets API, and fed a mix of invoices at a fixed rate.
+ * <p>
+ * The load is open-loop: requests go out on schedule whether or not earlier
+ * ones have returned, and latency is measured from the scheduled time, so a
+ * stalled server shows up as latency rather than as a lower request rate.
+ * After the run the queues are left to drain, then the report lists
+ * throughput, client-side latency percentiles, each stage's timings and
+ * failures as recorded by the app's own meters over the measured window,
+ * what the stubs received, and heap use. The heap figures cover the whole
+ * JVM, driver and stubs included.
+ * <p>
+ * Arguments are {@code key=value}; anything starting with {@code --} is
+ * passed to the app, e.g. {@code --invoice.admission.render.max-concurrent=2}.
+ * <ul>
+ * <li>{@code rate} requests per second (10), {@code duration} and
+ * {@code warmup} in seconds (60, 10)</li>
+ * <li>{@code mix}, weights of the invoice shapes in {@link #SHAPES}
+ * ({@code placed:55,quotation:20,customer:15,unlogged:5,wholesale:5})</li>
+ * <li>{@code email.latency}, {@code email.jitter} in ms and
+ * {@code email.errors} as a share (150, 100, 0.02); the same for
+ * {@code sheets.*} (250, 150, 0.02)</li>
+ * <li>{@code max-inflight} requests before the driver counts a send as
+ * skipped (256), {@code seed} for the invoice mix (1)</li>
+ * </ul>
+ */
+public final class LoadHarness {
+
+    private static final String SECRET_KEY = "load-test-key-16";
+
+    /** Invoice shapes by name: status, who issued it, whether it is logged, item count range. */
+    private record Shape(String status, String issuedBy, boolean logged, int minItems, int maxItems) {
+
+    }
+
+    private static final Map<String, Shape> SHAPES = Map.of(
+            "placed", new Shape("Placed", "Diptimoy", true, 1, 8),
+            "quotation", new Shape("Quotation", "Diptimoy", true, 5, 25),
+            "customer", new Shape("Placed", "Customer", true, 1, 5),
+            "unlogged", new Shape("Placed", "Diptimoy", false, 1, 5),
+            "wholesale", new Shape("Placed", "Diptimoy", true, 150, 400));
+
+    /** App meters reported per stage, merged across all tags but {@code groupBy}. */
+    private record Stage(String label, String meter, List<String> groupBy) {
+
+    }
+
+    private static final List<Stage> STAGES = List.of(
+            new Stage("http", "http.server.requests", List.of("status")),
+            new Stage("template", "invoice.template.process", List.of()),
+            new Stage("render", "invoice.pdf.render", List.of("outcome")),
+            new Stage("store", "invoice.store.save", List.of()),
+            new Stage("email", "invoice.email.dispatch", List.of("outcome")),
+            new Stage("sinks", "invoice.sinks.deliver", List.of("sink", "outcome")),
+            new Stage("sheets", "invoice.sheets.flush", List.of("outcome")));
+
+    private static final List<String> COUNTERS = List.of(
+            "invoice.email.retries", "invoice.email.failures", "invoice.sheets.rows.dropped",
+            "invoice.sinks.dropped", "invoice.admission.rejected");
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int maxInflight = Integer.parseInt(options.getOrDefault("max-inflight", "256"));
+        Map<Shape, Integer> mix = mix(options.getOrDefault("mix",
+                "placed:55,quotation:20,customer:15,unlogged:5,wholesale:5"));
+
+        try (StubServer email = StubServer.emailRelay(SECRET_KEY, faults(options, "email", 150, 100, 0.02));
+                StubServer sheets = StubServer.sheetsApi(faults(options, "sheets", 250, 150, 0.02))) {
+
+            ConfigurableApplicationContext app = start(email, sheets, appArgs);
+            MeterRegistry registry = app.getBean(MeterRegistry.class);
+            URI uri = URI.create("http://127.0.0.1:"
+                    + app.getEnvironment().getProperty("local.server.port") + "/invoice/generate");
+
+            Driver driver = new Driver(uri, mix, maxInflight,
+                    new Random(Long.parseLong(options.getOrDefault("seed", "1"))));
+
+            System.out.printf("warm-up: %d s at %.1f req/s%n", warmup, rate);
+            driver.run(rate, warmup);
+            drain(registry);
+
+            Map<String, Stat> before = snapshot(registry);
+            long gcBefore = gcMillis();
+            HeapSampler heap = new HeapSampler();
+
+            System.out.printf("load: %d s at %.1f req/s%n", duration, rate);
+            long start = System.nanoTime();
+            Driver.Result result = driver.run(rate, duration);
+            double loadSeconds = (System.nanoTime() - start) / 1e9;
+            long drainStart = System.nanoTime();
+            drain(registry);
+            double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+
+            heap.stop();
+            report(result, loadSeconds, drainSeconds, snapshot(registry), before);
+            System.out.println();
+            System.out.println(email.summary());
+            System.out.println(sheets.summary());
+            System.out.printf("%nheap used MB: max %d, after drain %d; GC time %d ms%n",
+                    heap.max >> 20, heapUsed() >> 20, gcMillis() - gcBefore);
+            app.close();
+        }
+        System.exit(0);
+    }
+
+    private static StubServer.Faults faults(Map<String, String> options, String stub,
+            long latency, long jitter, double errors) {
+        return new StubServer.Faults(
+                Duration.ofMillis(Long.parseLong(options.getOrDefault(stub + ".latency", String.valueOf(latency)))),
+                Duration.ofMillis(Long.parseLong(options.getOrDefault(stub + ".jitter", String.valueOf(jitter)))),
+                Double.parseDouble(options.getOrDefault(stub + ".errors", String.valueOf(errors))));
+    }
+
+    private static Map<Shape, Integer> mix(String spec) {
+        Map<Shape, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weighted = part.split(":");
+            Shape shape = SHAPES.get(weighted[0].strip());
+            if (shape == null) {
+                throw new IllegalArgumentException("Unknown invoice shape " + weighted[0] + ", expected one of " + SHAPES.keySet());
+            }
+            mix.put(shape, Integer.parseInt(weighted[1].strip()));
+        }
+        return mix;
+    }
+
+    private static ConfigurableApplicationContext start(StubServer email, StubServer sheets,
+            List<String> appArgs) throws Exception {
+        // passed as command-line arguments, which outrank application.properties and the test config
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("google.spreadsheet.id", "load");
+        properties.put("google.sheets.base-url", sheets.url("/v4/spreadsheets/"));
+        properties.put("google.sheets.self-check", "false");
+        properties.put("email.api.url", email.url("/api/send"));
+        properties.put("email.secret.key", SECRET_KEY);
+        properties.put("email.smtp.user", "load");
+        properties.put("email.smtp.password", "load");
+        properties.put("email.from.address", "invoices@example.com");
+        properties.put("email.from.display", "Load test");
+        properties.put("email.replyto", "invoices@example.com");
+        properties.put("email.cc", "");
+        properties.put("email.bcc", "");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1");
+        properties.put("invoice.email.outbox-dir", Files.createTempDirectory("load-outbox").toString());
+        // every request comes from this host, which the per-client limit would throttle
+        properties.put("invoice.admission.rate.per-second", "0");
+        properties.put("management.metrics.distribution.percentiles-histogram.http.server.requests", "true");
+        for (String arg : appArgs) {
+            int eq = arg.indexOf('=');
+            properties.put(arg.substring(2, eq < 0 ? arg.length() : eq), eq < 0 ? "" : arg.substring(eq + 1));
+        }
+        String[] args = properties.entrySet().stream()
+                .map(p -> "--" + p.getKey() + "=" + p.getValue())
+                .toArray(String[]::new);
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(GenerationApplication.class).run(args);
+
+        // a service account whose token endpoint is the stub, so the real OAuth client is exercised
+        app.getBean(GoogleSheetsService.class).useCredentials(GoogleCredentials
+                .fromStream(new ByteArrayInputStream(SheetsAppendBenchmark.serviceAccountJson(sheets.url("/token"))))
+                .createScoped(List.of("https://www.googleapis.com/auth/spreadsheets")));
+        return app;
+    }
+
+    /** Waits until the email outbox, the sink queues and the sheet batches are empty. */
+    private static void drain(MeterRegistry registry) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            double pending = gauges(registry, "invoice.email.outbox.pending")
+                    + gauges(registry, "invoice.email.inflight")
+                    + gauges(registry, "invoice.sinks.queued")
+                    + gauges(registry, "invoice.sheets.pending.rows");
+            if (pending == 0) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        System.out.println("queues did not drain within 2 minutes");
+    }
+
+    private static double gauges(MeterRegistry registry, String name) {
+        return registry.find(name).gauges().stream().mapToDouble(Gauge::value).sum();
+    }
+
+    /* ==================== DRIVER ==================== */
+
+    /** Sends invoices on a fixed schedule and records latency from each scheduled send time. */
+    private static final class Driver {
+
+        record Result(long[] latencies, Map<String, Long> statuses, long skipped) {
+
+        }
+
+        private final ObjectMapper json = new ObjectMapper();
+        private final HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+        private final URI uri;
+        private final List<Shape> shapes = new ArrayList<>();
+        private final int[] cumulativeWeights;
+        private final Semaphore inflight;
+        private final Random random;
+        private final AtomicLong sequence = new AtomicLong();
+
+        Driver(URI uri, Map<Shape, Integer> mix, int maxInflight, Random random) {
+            this.uri = uri;
+            this.cumulativeWeights = new int[mix.size()];
+            int total = 0;
+            for (Map.Entry<Shape, Integer> weighted : mix.entrySet()) {
+                total += weighted.getValue();
+                cumulativeWeights[shapes.size()] = total;
+                shapes.add(weighted.getKey());
+            }
+            this.inflight = new Semaphore(maxInflight);
+            this.random = random;
+        }
+
+        Result run(double rate, int seconds) throws Exception {
+            int total = (int) Math.round(rate * seconds);
+            long interval = (long) (1e9 / rate);
+            long[] latencies = new long[total];
+            Arrays.fill(latencies, -1);
+            Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+            long skipped = 0;
+
+            List<CompletableFuture<?>> sent = new ArrayList<>(total);
+            long start = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * interval;
+                LockSupport.parkNanos(scheduled - System.nanoTime());
+
+                if (!inflight.tryAcquire()) {
+                    skipped++;
+                    continue;
+                }
+                int index = i;
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(nextInvoice())))
+                        .build();
+                sent.add(http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            latencies[index] = System.nanoTime() - scheduled;
+                            String status = error != null ? error.getClass().getSimpleName()
+                                    : String.valueOf(response.statusCode());
+                            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                            inflight.release();
+                        }));
+            }
+            CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new))
+                    .exceptionally(e -> null)
+                    .join();
+
+            Map<String, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return new Result(Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray(), counts, skipped);
+        }
+
+        private InvoiceDTO nextInvoice() {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int s = 0;
+            while (cumulativeWeights[s] <= pick) {
+                s++;
+            }
+            Shape shape = shapes.get(s);
+
+            InvoiceDTO invoice = BenchmarkInvoices.invoice(
+                    shape.minItems() + random.nextInt(shape.maxItems() - shape.minItems() + 1));
+            // a different customer every time, so the PDF cache does not answer for the renderer
+            invoice.customerName = "Load customer " + sequence.incrementAndGet();
+            invoice.invoiceStatus = shape.status();
+            invoice.issuedBy = shape.issuedBy();
+            invoice.enableLogging = shape.logged();
+            invoice.paymentMethod = random.nextBoolean() ? "ONLINE" : "CASH";
+            return invoice;
+        }
+    }
+
+    /* ==================== REPORT ==================== */
+
+    /** One timer series merged across tags: count, total time and cumulative histogram by bucket bound. */
+    private static final class Stat {
+
+        long count;
+        double totalMillis;
+        final TreeMap<Double, Double> buckets = new TreeMap<>();
+
+        Stat minus(Stat earlier) {
+            Stat diff = new Stat();
+            diff.count = count - (earlier == null ? 0 : earlier.count);
+            diff.totalMillis = totalMillis - (earlier == null ? 0 : earlier.totalMillis);
+            buckets.forEach((bound, n) -> diff.buckets.put(bound,
+                    n - (earlier == null ? 0 : earlier.buckets.getOrDefault(bound, 0.0))));
+            return diff;
+        }
+
+        /** Upper bound of the histogram bucket holding the {@code p} quantile, or ">" the last bound. */
+        String percentile(double p) {
+            double target = p * count;
+            for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+                if (bucket.getValue() >= target) {
+                    return String.format("%.1f", bucket.getKey());
+                }
+            }
+            return buckets.isEmpty() ? "-" : String.format(">%.0f", buckets.lastKey());
+        }
+    }
+
+    private static Map<String, Stat> snapshot(MeterRegistry registry) {
+        Map<String, Stat> stats = new TreeMap<>();
+        for (Stage stage : STAGES) {
+            for (Timer timer : registry.find(stage.meter()).timers()) {
+                if (stage.meter().startsWith("http.") && !"/invoice/generate".equals(timer.getId().getTag("uri"))) {
+                    continue;
+                }
+                StringBuilder key = new StringBuilder(stage.label());
+                for (String tag : stage.groupBy()) {
+                    key.append(' ').append(timer.getId().getTag(tag));
+                }
+                Stat stat = stats.computeIfAbsent(key.toString(), k -> new Stat());
+                stat.count += timer.count();
+                stat.totalMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+                for (CountAtBucket bucket : timer.takeSnapshot().histogramCounts()) {
+                    stat.buckets.merge(bucket.bucket(TimeUnit.MILLISECONDS), bucket.count(), Double::sum);
+                }
+            }
+        }
+        for (String name : COUNTERS) {
+            Stat stat = new Stat();
+            stat.count = (long) registry.find(name).counters().stream().mapToDouble(Counter::count).sum();
+            stats.put("counter " + name, stat);
+        }
+        return stats;
+    }
+
+    private static void report(Driver.Result result, double loadSeconds, double drainSeconds,
+            Map<String, Stat> after, Map<String, Stat> before) {
+        long[] latencies = result.latencies();
+        long ok = result.statuses().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("2")).mapToLong(Map.Entry::getValue).sum();
+
+        System.out.printf("%nclient: %d completed, %d skipped at max-inflight, statuses %s%n",
+                latencies.length, result.skipped(), result.statuses());
+        System.out.printf("throughput: %.1f ok/s over %.1f s; queues drained %.1f s later%n",
+                ok / loadSeconds, loadSeconds, drainSeconds);
+        if (latencies.length > 0) {
+            System.out.printf("latency ms: p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+                    GenerateLoadTest.percentile(latencies, 0.50), GenerateLoadTest.percentile(latencies, 0.90),
+                    GenerateLoadTest.percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+
+        System.out.printf("%n%-32s %8s %10s %10s %10s%n", "stage (from app meters)", "count", "mean ms", "p50 ms", "p99 ms");
+        after.forEach((key, stat) -> {
+            if (key.startsWith("counter ")) {
+                return;
+            }
+            Stat window = stat.minus(before.get(key));
+            if (window.count == 0) {
+                return;
+            }
+            System.out.printf("%-32s %8d %10.1f %10s %10s%n", key, window.count,
+                    window.totalMillis / window.count, window.percentile(0.5), window.percentile(0.99));
+        });
+
+        System.out.println();
+        after.forEach((key, stat) -> {
+            if (key.startsWith("counter ")) {
+                System.out.printf("%-40s %8d%n", key.substring(8), stat.minus(before.get(key)).count);
+            }
+        });
+    }
+
+    /* ==================== HEAP ==================== */
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /** Highest heap use seen, sampled every 100 ms. */
+    private static final class HeapSampler {
+
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        private volatile long max;
+
+        HeapSampler() {
+            timer.scheduleAtFixedRate(() -> max = Math.max(max, heapUsed()), 0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.invoice.generation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.Service.InvoiceMetrics;
+import com.invoice.generation.Service.InvoiceService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@link InvoiceService#price} on small, typical and very large
+ * invoices, including the timer it records into.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class PayableBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int items;
+
+    private InvoiceService invoiceService;
+    private InvoiceDTO invoice;
+
+    @Setup
+    public void setUp() {
+        invoiceService = new InvoiceService(new InvoiceMetrics(new SimpleMeterRegistry()));
+        invoice = BenchmarkInvoices.invoice(items);
+    }
+
+    @Benchmark
+    public InvoiceTotalsDTO price() {
+        return invoiceService.price(invoice);
+    }
+}
@@ -0,0 +1,108 @@
+package com.invoice.generation.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.Service.InvoiceMetrics;
+import com.invoice.generation.Service.InvoiceService;
+import com.invoice.generation.Service.PdfCache;
+import com.invoice.generation.Service.PdfRenderResources;
+import com.invoice.generation.Service.PdfService;
+import com.invoice.generation.Service.RenderedPdf;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Warm render of a 10-item invoice, with and without the shared
+ * {@link PdfRenderResources}. Run with {@code -prof gc} for allocation per
+ * invoice.
+ * <ul>
+ * <li>{@code uncachedBuilder} renders the same HTML with a bare
+ * {@link PdfRendererBuilder}, reading and decoding the original images from
+ * the classpath on every call.</li>
+ * <li>{@code pdfService} is the production render path.</li>
+ * <li>{@code cachedPdf} is a repeat of the same invoice answered by the
+ * {@link PdfCache}.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class PdfRenderBenchmark {
+
+    private InvoiceDTO invoice;
+    private InvoiceTotalsDTO totals;
+    private TemplateEngine templateEngine;
+    private PdfService pdfService;
+    private PdfService cachingPdfService;
+    private String html;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InvoiceMetrics metrics = new InvoiceMetrics(registry);
+        invoice = BenchmarkInvoices.invoice(10);
+        totals = new InvoiceService(metrics).price(invoice);
+        templateEngine = BenchmarkInvoices.templateEngine();
+
+        PdfRenderResources resources = new PdfRenderResources(288);
+        resources.preload();
+        pdfService = new PdfService(templateEngine, resources, metrics,
+                new PdfCache(registry, resources, 0, 0, "", 0),
+                BenchmarkInvoices.admission(registry), 1000, 500);
+
+        PdfCache cache = new PdfCache(registry, resources, 64 << 20, 4 << 20, "", 0);
+        cache.start();
+        cachingPdfService = new PdfService(templateEngine, resources, metrics, cache,
+                BenchmarkInvoices.admission(registry), 1000, 500);
+        cachingPdfService.generatePdf(invoice, totals);
+        baseUrl = resources.baseUrl();
+
+        Context context = new Context();
+        context.setVariable("items", invoice.items);
+        context.setVariable("totals", totals);
+        context.setVariable("adjustmentAmount", invoice.adjustmentAmount);
+        html = templateEngine.process("invoice", context);
+    }
+
+    @Benchmark
+    public void uncachedBuilder() throws IOException {
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.withHtmlContent(html, baseUrl);
+        builder.toStream(OutputStream.nullOutputStream());
+        builder.run();
+    }
+
+    @Benchmark
+    public void pdfService() {
+        // PDFBox closes the stream, so each render needs a fresh one
+        pdfService.renderPdf(invoice, totals, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public RenderedPdf cachedPdf() {
+        return cachingPdfService.generatePdf(invoice, totals);
+    }
+}
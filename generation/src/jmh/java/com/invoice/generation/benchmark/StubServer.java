@@ -0,0 +1,189 @@
+package com.invoice.generation.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-ins for the services the generate flow calls, for load tests.
+ * <ul>
+ * <li>{@link #emailRelay} takes the relay's {@code {"encryptedPayload": ...}}
+ * body, decrypts it with the shared key and checks that it names a recipient
+ * and that an attachment, if any, is a PDF.</li>
+ * <li>{@link #sheetsApi} answers the OAuth token endpoint, the spreadsheet
+ * metadata read and {@code values:append}, counting the appended rows.</li>
+ * </ul>
+ * Both delay every response by the configured {@link Faults} and fail a
+ * share of requests with a 503, which the app retries as transient.
+ */
+final class StubServer implements AutoCloseable {
+
+    /** A delay of {@code latency} plus up to {@code jitter}, and the share of requests answered with 503. */
+    record Faults(Duration latency, Duration jitter, double errorRate) {
+
+        static final Faults NONE = new Faults(Duration.ZERO, Duration.ZERO, 0);
+
+        private void apply() throws InterruptedException {
+            long millis = latency.toMillis();
+            if (!jitter.isZero()) {
+                millis += ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1);
+            }
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+        }
+
+        private boolean fail() {
+            return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+    }
+
+    /** Returns the JSON response; anything it throws is answered with 400. */
+    @FunctionalInterface
+    private interface Handler {
+
+        String handle(HttpExchange exchange, byte[] body) throws Exception;
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String name;
+    private final String unit;
+    private final Faults faults;
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injected = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    private StubServer(String name, String unit, Faults faults) throws IOException {
+        this.name = name;
+        this.unit = unit;
+        this.faults = faults;
+        // without this the split header/body writes hit the 40 ms delayed-ACK stall
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(threads);
+    }
+
+    /** The email relay at {@code /api/send}, decrypting with the app's {@code email.secret.key}. */
+    static StubServer emailRelay(String secretKey, Faults faults) throws IOException {
+        StubServer stub = new StubServer("email relay", "emails", faults);
+        SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(), "AES");
+        stub.handle("/api/send", true, (exchange, body) -> {
+            JsonNode email = JSON.readTree(decrypt(key, JSON.readTree(body).path("encryptedPayload").asText()));
+            if (email.path("to").asText().isBlank()) {
+                throw new IllegalArgumentException("no recipient");
+            }
+            for (JsonNode attachment : email.path("attachments")) {
+                byte[] pdf = Base64.getDecoder().decode(attachment.path("fileBase64").asText());
+                if (pdf.length < 4 || !new String(pdf, 0, 4, StandardCharsets.US_ASCII).equals("%PDF")) {
+                    throw new IllegalArgumentException("attachment is not a PDF");
+                }
+            }
+            stub.delivered.increment();
+            return "{\"success\":true}";
+        });
+        stub.server.start();
+        return stub;
+    }
+
+    /** The Sheets API under {@code /v4/spreadsheets/}, with its token endpoint at {@code /token}. */
+    static StubServer sheetsApi(Faults faults) throws IOException {
+        StubServer stub = new StubServer("sheets api", "rows", faults);
+        // token refreshes are not what is being measured, so they skip the faults
+        stub.handle("/token", false, (exchange, body)
+                -> "{\"access_token\":\"stub-token\",\"expires_in\":3600,\"token_type\":\"Bearer\"}");
+        stub.handle("/v4/spreadsheets/", true, (exchange, body) -> {
+            if (!exchange.getRequestURI().getPath().endsWith(":append")) {
+                return "{\"spreadsheetId\":\"load\"}";
+            }
+            JsonNode values = JSON.readTree(body).path("values");
+            if (!values.isArray() || values.isEmpty()) {
+                throw new IllegalArgumentException("no rows");
+            }
+            stub.delivered.add(values.size());
+            return "{\"updates\":{\"updatedRows\":" + values.size() + "}}";
+        });
+        stub.server.start();
+        return stub;
+    }
+
+    private void handle(String path, boolean withFaults, Handler handler) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                if (withFaults) {
+                    requests.increment();
+                    faults.apply();
+                    if (faults.fail()) {
+                        injected.increment();
+                        respond(exchange, 503, "{\"error\":\"injected\"}");
+                        return;
+                    }
+                }
+                String response;
+                try {
+                    response = handler.handle(exchange, body);
+                } catch (Exception e) {
+                    // an undecryptable or malformed request: the app sent something the real service would reject
+                    invalid.increment();
+                    respond(exchange, 400, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+                    return;
+                }
+                respond(exchange, 200, response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static byte[] decrypt(SecretKeySpec key, String base64) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return cipher.doFinal(Base64.getDecoder().decode(base64));
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    long delivered() {
+        return delivered.sum();
+    }
+
+    String summary() {
+        return String.format("%-12s %7d requests  %5d injected 503s  %4d invalid  %7d %s",
+                name, requests.sum(), injected.sum(), invalid.sum(), delivered.sum(), unit);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+}
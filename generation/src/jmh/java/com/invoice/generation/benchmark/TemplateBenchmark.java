@@ -0,0 +1,63 @@
+package com.invoice.generation.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.Service.InvoiceMetrics;
+import com.invoice.generation.Service.InvoiceService;
+import com.invoice.generation.Service.PdfCache;
+import com.invoice.generation.Service.PdfRenderResources;
+import com.invoice.generation.Service.PdfService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Thymeleaf processing of the {@code invoice} template on its own, from the
+ * DTO to the HTML handed to openhtmltopdf.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+
+    @Param({"10", "100"})
+    int items;
+
+    private PdfService pdfService;
+    private InvoiceDTO invoice;
+    private InvoiceTotalsDTO totals;
+
+    @Setup
+    public void setUp() throws IOException {
+        PdfRenderResources resources = new PdfRenderResources(288);
+        resources.preload();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pdfService = new PdfService(BenchmarkInvoices.templateEngine(), resources,
+                new InvoiceMetrics(registry), new PdfCache(registry, resources, 0, 0, "", 0),
+                BenchmarkInvoices.admission(registry), 1000, 500);
+        invoice = BenchmarkInvoices.invoice(items);
+        totals = new InvoiceService(new InvoiceMetrics(registry)).price(invoice);
+    }
+
+    @Benchmark
+    public String renderHtml() {
+        return pdfService.renderHtml(invoice, totals);
+    }
+}
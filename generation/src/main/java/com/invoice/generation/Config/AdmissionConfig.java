@@ -0,0 +1,73 @@
+package com.invoice.generation.Config;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.invoice.generation.Service.AdmissionControl;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Puts {@link AdmissionControl} in front of every endpoint that renders a
+ * PDF or a preview. Requests over the client's rate get 429, and requests
+ * arriving while the render queue is full get 503, both with Retry-After
+ * and before any body is read. Clients are told apart by remote address, which is the
+ * real client once {@code server.forward-headers-strategy} is set behind a
+ * proxy.
+ */
+@Configuration
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    private final AdmissionControl admission;
+
+    public AdmissionConfig(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws IOException {
+                return admit(request, response);
+            }
+        }).addPathPatterns(
+                "/invoice/generate/**", "/invoice/pdf", "/invoice/preview", "/invoice/records/*/pdf");
+    }
+
+    private boolean admit(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // streamed responses come back through here on their async dispatch; count them once
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || HttpMethod.OPTIONS.matches(request.getMethod())) {
+            return true;
+        }
+
+        long wait = admission.tryAcquire(request.getRemoteAddr());
+        if (wait > 0) {
+            return reject(response, HttpStatus.TOO_MANY_REQUESTS, wait,
+                    "Too many invoice requests, slow down");
+        }
+        if (admission.shedLoad()) {
+            return reject(response, HttpStatus.SERVICE_UNAVAILABLE, admission.retryAfterSeconds(),
+                    "Server is busy rendering invoices, try again shortly");
+        }
+        return true;
+    }
+
+    private static boolean reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds,
+            String message) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.sendError(status.value(), message);
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.invoice.generation.Config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * One WebClient for the email relay, shared by every send, so connections
+ * to the relay are pooled and kept alive instead of being set up per email.
+ */
+@Configuration
+public class EmailClientConfig {
+
+    @Bean
+    public WebClient emailWebClient(
+            WebClient.Builder builder,
+            @Value("${invoice.email.max-connections:16}") int maxConnections,
+            @Value("${invoice.email.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${invoice.email.response-timeout-ms:30000}") long responseTimeoutMs
+    ) {
+        ConnectionProvider pool = ConnectionProvider.builder("email-relay")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofSeconds(30))
+                // the relay is behind a load balancer that drops idle connections
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+
+        HttpClient http = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .keepAlive(true);
+
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .build();
+    }
+}
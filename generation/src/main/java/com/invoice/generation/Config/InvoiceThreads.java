@@ -0,0 +1,44 @@
+package com.invoice.generation.Config;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Thread mode for the pools the services create themselves. With
+ * {@code spring.threads.virtual.enabled=true} on Java 21+ (the Docker image),
+ * Boot already moves Tomcat request handling and the
+ * {@code applicationTaskExecutor} onto virtual threads; this hands the same
+ * choice to our own executors. On older runtimes the property is ignored
+ * and everything stays on platform threads.
+ */
+@Component
+public class InvoiceThreads {
+
+    private final boolean virtual;
+
+    public InvoiceThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /** Threads named {@code prefix1, prefix2, ...}; daemon when on platform threads. */
+    public ThreadFactory factory(String prefix) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
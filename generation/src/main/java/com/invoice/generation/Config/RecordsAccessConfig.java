@@ -0,0 +1,65 @@
+package com.invoice.generation.Config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Guards {@code /invoice/records}, which reads customers' contact details
+ * and full invoices back out of the store. Callers must send
+ * {@code invoice.records.api-key} in the {@code X-Api-Key} header; while the
+ * key is blank (the default) the endpoints answer 404 as if they did not
+ * exist.
+ */
+@Configuration
+public class RecordsAccessConfig implements WebMvcConfigurer {
+
+    static final String API_KEY_HEADER = "X-Api-Key";
+
+    private final byte[] apiKey;
+
+    public RecordsAccessConfig(@Value("${invoice.records.api-key:}") String apiKey) {
+        this.apiKey = apiKey.isBlank() ? null : apiKey.strip().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws IOException {
+                return authorize(request, response);
+            }
+        }).addPathPatterns("/invoice/records", "/invoice/records/**");
+    }
+
+    private boolean authorize(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || HttpMethod.OPTIONS.matches(request.getMethod())) {
+            return true;
+        }
+        if (apiKey == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return false;
+        }
+        String presented = request.getHeader(API_KEY_HEADER);
+        // constant-time, so the key cannot be guessed a character at a time
+        if (presented == null || !MessageDigest.isEqual(apiKey, presented.getBytes(StandardCharsets.UTF_8))) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "A valid " + API_KEY_HEADER + " is required");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package com.invoice.generation.Config;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+import com.invoice.generation.Service.InvoiceService;
+import com.invoice.generation.Service.PdfService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Renders one throwaway invoice before the application reports ready, so
+ * the first real request after a cold start does not pay for loading
+ * PDFBox, its fonts and the layout classes. Runners finish before Boot
+ * flips the readiness state, so /actuator/health/readiness stays DOWN
+ * until this is done. Switch off with {@code invoice.warmup.enabled=false}.
+ * <p>
+ * Once ready, logs how long the JVM took to get there and the resident
+ * set size, which is also published as {@code process.memory.rss}.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    private final PdfService pdfService;
+    private final InvoiceService invoiceService;
+    private final boolean enabled;
+
+    public StartupWarmup(
+            PdfService pdfService,
+            InvoiceService invoiceService,
+            MeterRegistry registry,
+            @Value("${invoice.warmup.enabled:true}") boolean enabled
+    ) {
+        this.pdfService = pdfService;
+        this.invoiceService = invoiceService;
+        this.enabled = enabled;
+
+        Gauge.builder("process.memory.rss", StartupWarmup::residentBytes)
+                .description("Resident set size of the JVM process")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            InvoiceDTO invoice = sampleInvoice();
+            pdfService.warmUp(invoice, invoiceService.price(invoice));
+            log.info("Warmed up PDF rendering in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // a cold first request is better than not starting at all
+            log.warn("PDF warm-up failed, the first invoice will be slower", e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        boolean cds = jvmArgs.stream().anyMatch(a -> a.startsWith("-XX:SharedArchiveFile"));
+        log.info("Ready {} ms after JVM start, RSS {} MB, heap used {} MB, CDS archive {}",
+                ManagementFactory.getRuntimeMXBean().getUptime(),
+                Math.round(residentBytes() / (1024 * 1024)),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024),
+                cds ? "on" : "off");
+    }
+
+    /** VmRSS from /proc, or NaN where there is no /proc. */
+    static double residentBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return Double.NaN;
+    }
+
+    private static InvoiceDTO sampleInvoice() {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.customerName = "Warm-up";
+        invoice.customerPhone = "0000000000";
+        invoice.customerAddress = "-";
+        invoice.invoiceStatus = "Quotation";
+        invoice.invoiceDate = "01-01-2024";
+        invoice.paymentMethod = "ONLINE";
+        invoice.paymentDetails = "-";
+        invoice.issuedBy = "warmup";
+        invoice.ownerMessage = "-";
+        invoice.applyOverallDiscount = true;
+        invoice.overallDiscount = 5;
+        invoice.overallDiscountType = "PERCENT";
+
+        List<ItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ItemDTO item = new ItemDTO();
+            item.name = "Item " + i;
+            item.price = 100 + i;
+            item.quantity = 1;
+            item.discountType = "FLAT";
+            items.add(item);
+        }
+        invoice.items = items;
+        return invoice;
+    }
+}
@@ -1,34 +1,81 @@
 package com.invoice.generation.Controller;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.BatchResultDTO;
 import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceJobDTO;
+import com.invoice.generation.DTOs.InvoiceStatsDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.Service.AdmissionControl;
 import com.invoice.generation.Service.GenericEmailService;
-import com.invoice.generation.Service.GoogleSheetsService;
+import com.invoice.generation.Service.IdempotencyService;
+import com.invoice.generation.Service.InvoiceBatchReader;
+import com.invoice.generation.Service.InvoiceBatchService;
+import com.invoice.generation.Service.InvoiceEvent;
+import com.invoice.generation.Service.InvoiceJob;
+import com.invoice.generation.Service.InvoiceJobService;
+import com.invoice.generation.Service.InvoiceNumbers;
+import com.invoice.generation.Service.InvoicePreviewService;
 import com.invoice.generation.Service.InvoiceService;
+import com.invoice.generation.Service.InvoiceSinks;
+import com.invoice.generation.Service.InvoiceStats;
+import com.invoice.generation.Service.InvoiceStore;
 import com.invoice.generation.Service.PdfService;
+import com.invoice.generation.Service.RenderedPdf;
 
 @CrossOrigin(
         origins = {"http://localhost:3000", "https://invoicegeneration-pi.vercel.app"},
-        methods = {RequestMethod.POST, RequestMethod.OPTIONS}
+        methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS}
 )
 @RestController
 @RequestMapping("/invoice")
 public class InvoiceController {
 
+    private static final Logger log = LoggerFactory.getLogger(InvoiceController.class);
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     @Autowired
     private InvoiceService invoiceService;
 
@@ -36,110 +83,333 @@ public class InvoiceController {
     private PdfService pdfService;
 
     @Autowired
-    private GoogleSheetsService googleSheetsService;
+    private InvoiceSinks invoiceSinks;
+
+    @Lazy
+    @Autowired
+    private InvoicePreviewService invoicePreviewService;
+
+    @Autowired
+    private InvoiceStore invoiceStore;
+
+    @Autowired
+    private InvoiceJobService invoiceJobService;
+
+    // batches and previews are occasional, so their beans are built on first use
+    @Lazy
+    @Autowired
+    private InvoiceBatchService invoiceBatchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @Autowired
     GenericEmailService mail;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private InvoiceNumbers invoiceNumbers;
+
+    @Autowired
+    private InvoiceStats invoiceStats;
+
+    // how long a client-supplied Idempotency-Key is honoured
+    @Value("${invoice.idempotency.key-ttl:24h}")
+    private Duration idempotencyKeyTtl;
+
+    // without a key, identical bodies only count as retries for a short while
+    @Value("${invoice.idempotency.body-ttl:2m}")
+    private Duration idempotencyBodyTtl;
+
     @PostMapping("/generate")
-    public String generateInvoice(@RequestBody InvoiceDTO invoice) {
+    public String generateInvoice(
+            @RequestBody InvoiceDTO invoice,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+
+        validate(invoice);
+
+        return deduplicated("generate", idempotencyKey, invoice, () -> issue(invoice));
+    }
+
+    private String issue(InvoiceDTO invoice) {
 
         String date = LocalDateTime.now()
                 .format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm"));
 
-        double amount = invoiceService.calculatePayable(invoice);
-
-        String pdfPath = pdfService.generatePdf(invoice, amount);
-        File pdfFile = new File(pdfPath);
-        mail.sendEmail(invoice.customerEmail, invoice.customerName, invoice.invoiceStatus, date, pdfFile);
-        String itemsSummary = invoice.items.stream()
-                .map(item
-                        -> item.name
-                + " x" + item.quantity
-                + " @ " + item.price
-                )
-                .collect(Collectors.joining("\n"));
-
-        if (invoice.enableLogging && !"Customer".equalsIgnoreCase(invoice.issuedBy)
-                && !invoice.invoiceStatus.equalsIgnoreCase("Order_Placed")) {
-            String sheetName = "";
-            if (invoice.invoiceStatus.equalsIgnoreCase("Placed")) {
-                sheetName = "SP_LOG";
-            } else if (invoice.invoiceStatus.equalsIgnoreCase("Quotation")) {
-                sheetName = "QUOTATION_LOG";
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+        invoice.invoiceNumber = invoiceNumbers.nextNumber();
+
+        String printed = PdfService.printedDate(invoice);
+        try (RenderedPdf pdf = pdfService.issuePdf(invoice, totals, printed, AdmissionControl.Lane.INTERACTIVE)) {
+
+            // the local store is the system of record; the sheet is a copy of it
+            InvoiceStore.Issued issued = new InvoiceStore.Issued(invoice, totals, printed,
+                    pdfService.pdfRef(invoice, totals, printed));
+            invoiceStore.save(issued);
+            invoiceStats.record(issued);
+
+            // sheets, CSV and webhook run on their own queues; none of them holds up the response
+            invoiceSinks.publish(InvoiceEvent.of(invoice, totals, date));
+
+            // the invoice is issued and stored by now: failing the request would
+            // only make the client retry it under a new number
+            try {
+                mail.sendEmail(invoice, date, pdf, PdfService.fileName(invoice));
+            } catch (RuntimeException e) {
+                log.warn("Invoice {} was issued but its email could not be queued", invoice.invoiceNumber, e);
+                return "Invoice generated, but the email could not be queued";
+            }
+        }
+
+        return "Invoice generated & email queued";
+    }
+
+    @PostMapping(value = "/generate", params = "async=true")
+    public ResponseEntity<InvoiceJobDTO> generateInvoiceAsync(
+            @RequestBody InvoiceDTO invoice,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+
+        validate(invoice);
+
+        try {
+            // a duplicate gets the original job, with its current status
+            InvoiceJob job = deduplicated("generate-async", idempotencyKey, invoice, () -> {
+                String date = LocalDateTime.now()
+                        .format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm"));
+                InvoiceTotalsDTO totals = invoiceService.price(invoice);
+                invoice.invoiceNumber = invoiceNumbers.nextNumber();
+                return invoiceJobService.submit(invoice, totals, date);
+            });
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toDTO());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Invoice queue is full, try again shortly");
+        }
+    }
+
+    /**
+     * Renders the invoice and streams it back as the response body, without
+     * emailing or logging it.
+     */
+    @PostMapping("/pdf")
+    public ResponseEntity<StreamingResponseBody> downloadPdf(@RequestBody InvoiceDTO invoice) {
+
+        validate(invoice);
+
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename(PdfService.fileName(invoice)).build().toString())
+                .body(out -> pdfService.renderPdf(invoice, totals, out));
+    }
+
+    /**
+     * Prices and lays out the invoice without rendering it to PDF, emailing,
+     * logging or storing it: the HTML page by default, or with
+     * {@code format=png} a low-resolution image of page 1 of the PDF.
+     */
+    @PostMapping("/preview")
+    public ResponseEntity<byte[]> preview(
+            @RequestBody InvoiceDTO invoice,
+            @RequestParam(defaultValue = "html") String format) {
+
+        validate(invoice);
+
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+
+        if ("png".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .cacheControl(CacheControl.noStore())
+                    .body(invoicePreviewService.png(invoice, totals));
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .cacheControl(CacheControl.noStore())
+                .body(invoicePreviewService.html(invoice, totals).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // a bad invoice in a batch fails only its own entry, so the batch is bound element by element
+    @PostMapping(value = "/generate/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBatch(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "ndjson") String format) throws IOException {
+        return batchResponse(openBatch(request, true), format);
+    }
+
+    @PostMapping(value = "/generate/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBatchNdjson(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "ndjson") String format) throws IOException {
+        return batchResponse(openBatch(request, false), format);
+    }
+
+    /**
+     * Opens the body for reading as the batch runs. The first invoice is read
+     * up front, so a body that is not a batch at all, or is empty or over a
+     * limit from the start, still gets a 400 or 413 instead of a stream.
+     */
+    private InvoiceBatchReader openBatch(HttpServletRequest request, boolean array) throws IOException {
+        InvoiceBatchReader batch = invoiceBatchService.open(objectMapper.readerFor(InvoiceDTO.class),
+                request.getInputStream(), request.getContentLengthLong(), array);
+        try {
+            if (batch.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "batch must not be empty");
             }
-            googleSheetsService.writeRow(
-                    sheetName,
-                    "A:P",
-                    List.of(
-                            date,
-                            itemsSummary,
-                            Objects.toString(invoice.customerName, ""),
-                            Objects.toString(invoice.customerPhone, ""),
-                            Objects.toString(invoice.customerEmail, ""),
-                            Objects.toString(invoice.customerAddress, ""),
-                            Objects.toString(invoice.invoiceStatus, ""),
-                            Objects.toString(amount, "0"),
-                            Objects.toString(invoice.ownerMessage, ""),
-                            Objects.toString(invoice.paymentMethod, ""),
-                            Objects.toString(invoice.paymentDetails, ""),
-                            Objects.toString(invoice.issuedBy, ""),
-                            Objects.toString(invoice.applyOverallDiscount, "false"),
-                            Objects.toString(invoice.overallDiscount, "0"),
-                            Objects.toString(invoice.overallDiscountType, ""),
-                            Objects.toString(invoice.adjustmentAmount, "0"),
-                            Objects.toString(invoice.adjustmentAmountType, "")
-                    )
-            );
+            return batch;
+        } catch (IOException | RuntimeException e) {
+            batch.close();
+            throw e;
         }
+    }
 
-        if (!"Customer".equalsIgnoreCase(invoice.issuedBy) && !invoice.enableLogging) {
-
-            googleSheetsService.writeRow(
-                    "CP_LOG",
-                    "A:P",
-                    List.of(
-                            date,
-                            itemsSummary,
-                            Objects.toString(invoice.customerName, ""),
-                            Objects.toString(invoice.customerPhone, ""),
-                            Objects.toString(invoice.customerEmail, ""),
-                            Objects.toString(invoice.customerAddress, ""),
-                            Objects.toString(invoice.invoiceStatus, ""),
-                            Objects.toString(amount, "0"),
-                            Objects.toString(invoice.ownerMessage, ""),
-                            Objects.toString(invoice.paymentMethod, ""),
-                            Objects.toString(invoice.paymentDetails, ""),
-                            Objects.toString(invoice.issuedBy, ""),
-                            Objects.toString(invoice.applyOverallDiscount, "false"),
-                            Objects.toString(invoice.overallDiscount, "0"),
-                            Objects.toString(invoice.overallDiscountType, ""),
-                            Objects.toString(invoice.adjustmentAmount, "0"),
-                            Objects.toString(invoice.adjustmentAmountType, "")
-                    )
-            );
+    /**
+     * Streams one result per invoice as it completes: NDJSON lines by
+     * default, or with {@code format=zip} a ZIP of the PDFs that ends with a
+     * results.ndjson entry covering every invoice, failed ones included.
+     */
+    private ResponseEntity<StreamingResponseBody> batchResponse(InvoiceBatchReader invoices, String format) {
+        if ("zip".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename("invoices.zip").build().toString())
+                    .body(out -> {
+                        ZipOutputStream zip = new ZipOutputStream(out);
+                        StringBuilder results = new StringBuilder();
+                        runBatch(invoices, result -> {
+                            try {
+                                if (result.ok()) {
+                                    zip.putNextEntry(new ZipEntry(result.fileName()));
+                                    result.pdf().writeTo(zip);
+                                    zip.closeEntry();
+                                    zip.flush();
+                                }
+                                results.append(objectMapper.writeValueAsString(toDTO(result))).append('\n');
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                        zip.putNextEntry(new ZipEntry("results.ndjson"));
+                        zip.write(results.toString().getBytes(StandardCharsets.UTF_8));
+                        zip.closeEntry();
+                        zip.finish();
+                    });
         }
 
-        if ("Customer".equalsIgnoreCase(invoice.issuedBy)) {
-
-            googleSheetsService.writeRow(
-                    "ORDER_LOG",
-                    "A:H",
-                    List.of(
-                            date,
-                            itemsSummary,
-                            Objects.toString(invoice.invoiceStatus, ""),
-                            Objects.toString(invoice.customerName, ""),
-                            Objects.toString(invoice.customerPhone, ""),
-                            Objects.toString(invoice.customerEmail, ""),
-                            Objects.toString(invoice.customerAddress, ""),
-                            Objects.toString(invoice.issuedBy, ""),
-                            Objects.toString(invoice.ownerMessage, "")
-                    )
-            );
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> runBatch(invoices, result -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(toDTO(result)));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    private void runBatch(InvoiceBatchReader invoices, Consumer<InvoiceBatchService.Result> onResult)
+            throws IOException {
+        try (invoices) {
+            invoiceBatchService.process(invoices, onResult);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch interrupted", e);
         }
+    }
 
-        return "Invoice generated & emailed successfully";
+    private static BatchResultDTO toDTO(InvoiceBatchService.Result result) {
+        BatchResultDTO dto = new BatchResultDTO();
+        dto.index = result.index();
+        dto.customerName = result.invoice() == null ? null : result.invoice().customerName;
+        dto.status = result.ok() ? "OK" : "FAILED";
+        dto.amount = result.amount();
+        dto.fileName = result.fileName();
+        dto.error = result.error();
+        dto.millis = result.millis();
+        return dto;
+    }
+
+    @GetMapping("/jobs/{id}")
+    public InvoiceJobDTO getJob(@PathVariable String id) {
+        InvoiceJob job = invoiceJobService.find(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown invoice job " + id);
+        }
+        return job.toDTO();
+    }
+
+    /**
+     * Invoice count, amount and discount so far, overall and per day, status,
+     * payment method and issuer, from the in-memory running totals.
+     */
+    @GetMapping("/stats")
+    public InvoiceStatsDTO stats() {
+        return invoiceStats.read();
+    }
+
+    /**
+     * Runs {@code work} at most once per Idempotency-Key, or per identical
+     * body when the client sent no key, and answers repeats with the first
+     * result.
+     */
+    private <T> T deduplicated(String endpoint, String idempotencyKey, InvoiceDTO invoice, Supplier<T> work) {
+        String fingerprint;
+        try {
+            fingerprint = IdempotencyService.fingerprint(objectMapper.writeValueAsBytes(invoice));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        boolean hasKey = idempotencyKey != null && !idempotencyKey.isBlank();
+        String key = endpoint + (hasKey ? ":key:" + idempotencyKey.strip() : ":body:" + fingerprint);
+        try {
+            return idempotencyService.execute(key, fingerprint,
+                    hasKey ? idempotencyKeyTtl : idempotencyBodyTtl, work);
+        } catch (IdempotencyService.KeyReusedException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+    }
+
+    /** A batch body over {@code invoice.batch.max-bytes}. */
+    @ExceptionHandler(InvoiceBatchReader.TooLargeException.class)
+    public ResponseEntity<String> batchTooLarge(InvoiceBatchReader.TooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    /** A render waited too long for a permit; the client should back off and retry. */
+    @ExceptionHandler(AdmissionControl.OverloadedException.class)
+    public ResponseEntity<String> overloaded(AdmissionControl.OverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * A body that is not JSON, or an invoice InvoiceDeserializer rejected
+     * while reading it, answered with what was wrong.
+     */
+    @ExceptionHandler({HttpMessageNotReadableException.class, JsonProcessingException.class})
+    public ResponseEntity<String> unreadable(Exception e) {
+        Throwable cause = e instanceof HttpMessageNotReadableException ? e.getCause() : e;
+        String message = cause instanceof JsonProcessingException json
+                ? json.getOriginalMessage()
+                : "Request body is not a readable invoice";
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(message);
+    }
+
+    private void validate(InvoiceDTO invoice) {
+        try {
+            invoiceService.validate(invoice);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,92 @@
+package com.invoice.generation.Controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.invoice.generation.Config.RecordsAccessConfig;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceRecordDTO;
+import com.invoice.generation.Service.InvoiceService;
+import com.invoice.generation.Service.InvoiceStore;
+import com.invoice.generation.Service.PdfService;
+
+/**
+ * Lookups over issued invoices, answered from the local {@link InvoiceStore}.
+ * Results are newest first; page with {@code before} set to the last id seen.
+ * Every endpoint here needs the records API key (see {@link RecordsAccessConfig}).
+ */
+@CrossOrigin(
+        origins = {"http://localhost:3000", "https://invoicegeneration-pi.vercel.app"},
+        methods = {RequestMethod.GET, RequestMethod.OPTIONS}
+)
+@RestController
+@RequestMapping("/invoice/records")
+public class InvoiceRecordController {
+
+    @Autowired
+    private InvoiceStore invoiceStore;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private PdfService pdfService;
+
+    @GetMapping
+    public List<InvoiceRecordDTO> find(
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
+        return invoiceStore.find(new InvoiceStore.Query(phone, email, status, from, to, before, limit));
+    }
+
+    @GetMapping("/{id}")
+    public InvoiceRecordDTO get(@PathVariable long id) {
+        return record(id);
+    }
+
+    /**
+     * The invoice's PDF, re-rendered from the stored invoice with the date it
+     * was first printed with, and cached under its stored pdfRef, so repeat
+     * downloads are served from the PDF cache.
+     */
+    @GetMapping("/{id}/pdf")
+    public ResponseEntity<StreamingResponseBody> pdf(@PathVariable long id) {
+        InvoiceRecordDTO record = record(id);
+        InvoiceDTO invoice = record.invoice;
+        // invoices stored before the printed date was kept get today's, as they always did
+        String printed = record.printedDate != null ? record.printedDate : PdfService.printedDate(invoice);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename("invoice_" + id + ".pdf").build().toString())
+                .body(out -> pdfService.renderStoredPdf(invoice, invoiceService.price(invoice), printed, record.pdfRef, out));
+    }
+
+    private InvoiceRecordDTO record(long id) {
+        return invoiceStore.get(id).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown invoice " + id));
+    }
+}
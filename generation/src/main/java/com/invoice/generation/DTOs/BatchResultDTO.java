@@ -0,0 +1,13 @@
+package com.invoice.generation.DTOs;
+
+public class BatchResultDTO {
+
+    public int index;               // position of the invoice in the request
+    public String customerName;
+    public String status;           // OK or FAILED
+    public double amount;
+    public String fileName;         // entry name in the ZIP, when one was requested
+    public String error;
+    public long millis;
+
+}
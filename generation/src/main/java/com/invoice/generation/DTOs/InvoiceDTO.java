@@ -4,6 +4,8 @@ import java.util.List;
 
 public class InvoiceDTO {
 
+    public String invoiceNumber;   // assigned by InvoiceNumbers when the invoice is issued
+
     public String customerName;
     public String customerPhone;
     public String customerAddress;
@@ -0,0 +1,10 @@
+package com.invoice.generation.DTOs;
+
+public class InvoiceEventDTO {
+
+    public String date;             // dd-MM-yyyy HH:mm the invoice was issued
+    public String sheet;            // log it was routed to, null if none
+    public double amount;           // payable, in rupees
+    public InvoiceDTO invoice;
+
+}
@@ -0,0 +1,18 @@
+package com.invoice.generation.DTOs;
+
+import java.util.Map;
+
+public class InvoiceJobDTO {
+
+    public String jobId;
+    public String status;           // QUEUED, RENDERING, DELIVERING, COMPLETED or FAILED
+    public String error;
+
+    public double amount;
+
+    public long submittedAt;        // epoch millis
+    public Long completedAt;
+
+    public Map<String, Long> stageMillis;   // render / email -> elapsed ms
+
+}
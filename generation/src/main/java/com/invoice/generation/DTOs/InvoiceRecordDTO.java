@@ -0,0 +1,28 @@
+package com.invoice.generation.DTOs;
+
+public class InvoiceRecordDTO {
+
+    public long id;
+    public String invoiceNumber;
+    public long issuedAt;           // epoch millis
+    public String invoiceDate;      // dd-MM-yyyy, when the client sent one
+
+    public String customerName;
+    public String customerPhone;
+    public String customerEmail;
+
+    public String invoiceStatus;
+    public String issuedBy;
+    public int itemCount;
+
+    public double subtotal;
+    public double overallDiscount;
+    public double adjustment;
+    public double amount;
+
+    public String pdfRef;           // content hash the PDF is cached under
+    public String printedDate;      // date printed on the PDF; null for invoices stored before it was kept
+
+    public InvoiceDTO invoice;      // the full invoice, on single-record lookups only
+
+}
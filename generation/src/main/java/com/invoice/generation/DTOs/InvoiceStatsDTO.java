@@ -0,0 +1,25 @@
+package com.invoice.generation.DTOs;
+
+import java.util.Map;
+
+public class InvoiceStatsDTO {
+
+    public long asOf;               // epoch millis the figures were read at
+    public long since;              // epoch millis counting started, carried across restarts
+
+    public Totals all;
+
+    public Map<String, Totals> byDay;            // yyyy-MM-dd the invoice was issued
+    public Map<String, Totals> byStatus;
+    public Map<String, Totals> byPaymentMethod;
+    public Map<String, Totals> byIssuedBy;
+
+    public static class Totals {
+
+        public long invoices;
+        public double amount;       // payable, in rupees
+        public double discount;     // item and overall discounts, in rupees
+
+    }
+
+}
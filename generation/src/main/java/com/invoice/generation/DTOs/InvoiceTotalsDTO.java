@@ -0,0 +1,74 @@
+package com.invoice.generation.DTOs;
+
+import java.util.Arrays;
+
+/**
+ * Priced breakdown of one invoice, in paise. Computed once by
+ * InvoiceService.price and shared by the PDF, the sheet log and the API
+ * responses; the text helpers format paise as rupees ("1234.50").
+ */
+public class InvoiceTotalsDTO {
+
+    public long[] unitPrice;        // per item, same order as InvoiceDTO.items
+    public long[] lineTotal;        // unit price x quantity
+    public long[] lineNet;          // line total after the item discount
+
+    public long subtotal;           // sum of lineNet
+    public long overallDiscount;    // taken off the subtotal, 0 unless applyOverallDiscount
+    public long adjustment;         // taken off after the overall discount
+    public long payable;
+
+    public InvoiceTotalsDTO(int items) {
+        unitPrice = new long[items];
+        lineTotal = new long[items];
+        lineNet = new long[items];
+    }
+
+    /**
+     * Items {@code from} (inclusive) to {@code to} of this breakdown, with
+     * the invoice-level totals unchanged; a large invoice is rendered one
+     * slice at a time.
+     */
+    public InvoiceTotalsDTO slice(int from, int to) {
+        InvoiceTotalsDTO slice = new InvoiceTotalsDTO(0);
+        slice.unitPrice = Arrays.copyOfRange(unitPrice, from, to);
+        slice.lineTotal = Arrays.copyOfRange(lineTotal, from, to);
+        slice.lineNet = Arrays.copyOfRange(lineNet, from, to);
+        slice.subtotal = subtotal;
+        slice.overallDiscount = overallDiscount;
+        slice.adjustment = adjustment;
+        slice.payable = payable;
+        return slice;
+    }
+
+    /** Payable amount in rupees, for JSON responses. */
+    public double payableRupees() {
+        return payable / 100.0;
+    }
+
+    public String unitPriceText(int i) {
+        return rupees(unitPrice[i]);
+    }
+
+    public String lineTotalText(int i) {
+        return rupees(lineTotal[i]);
+    }
+
+    public String lineNetText(int i) {
+        return rupees(lineNet[i]);
+    }
+
+    public String subtotalText() {
+        return rupees(subtotal);
+    }
+
+    public String payableText() {
+        return rupees(payable);
+    }
+
+    public static String rupees(long paise) {
+        long abs = Math.abs(paise);
+        long fraction = abs % 100;
+        return (paise < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
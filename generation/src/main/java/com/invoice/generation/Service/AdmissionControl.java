@@ -0,0 +1,279 @@
+package com.invoice.generation.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps request spikes from turning into an OutOfMemoryError. Each client
+ * gets a token bucket ({@code invoice.admission.rate.*}), and PDF renders
+ * share a fixed number of permits ({@code invoice.admission.render.*}):
+ * a render waits for a permit at most {@code queue-timeout}, and once
+ * {@code max-queue} renders are already waiting new requests are turned
+ * away at the door instead of joining the queue.
+ * <p>
+ * That only applies to renders a client is waiting on. Work that was
+ * already accepted (batch items, async jobs) renders in the
+ * {@link Lane#BACKGROUND} lane: it waits as long as it takes, never counts
+ * towards the queue, and holds at most
+ * {@code invoice.admission.render.background-max-concurrent} of the
+ * permits, so a batch cannot starve interactive requests.
+ */
+@Service
+public class AdmissionControl {
+
+    /** No render permit came free in time; the caller should retry later. */
+    public static class OverloadedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        public OverloadedException(long retryAfterSeconds) {
+            super("Server is busy rendering invoices, try again shortly");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final double tokensPerSecond;
+    private final double burst;
+    private final int maxClients;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /** Who a render is for. */
+    public enum Lane {
+        /** A client waiting on the response: bounded wait, turned away when overloaded. */
+        INTERACTIVE,
+        /** Work already accepted: waits for a permit, within its own smaller share. */
+        BACKGROUND
+    }
+
+    private final int maxRenders;
+    private final int maxBackgroundRenders;
+    private final int maxQueue;
+    private final Duration queueTimeout;
+    private final Duration retryAfter;
+    private final Semaphore renderPermits;
+    private final Semaphore backgroundPermits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger backgroundWaiting = new AtomicInteger();
+
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    public AdmissionControl(
+            MeterRegistry registry,
+            @Value("${invoice.admission.rate.per-second:2}") double tokensPerSecond,
+            @Value("${invoice.admission.rate.burst:10}") int burst,
+            @Value("${invoice.admission.rate.max-clients:10000}") int maxClients,
+            @Value("${invoice.admission.render.max-concurrent:0}") int maxRenders,
+            @Value("${invoice.admission.render.background-max-concurrent:0}") int maxBackgroundRenders,
+            @Value("${invoice.admission.render.max-queue:16}") int maxQueue,
+            @Value("${invoice.admission.render.queue-timeout:5s}") Duration queueTimeout,
+            @Value("${invoice.admission.retry-after:2s}") Duration retryAfter
+    ) {
+        this.tokensPerSecond = tokensPerSecond;
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.maxRenders = maxRenders > 0 ? maxRenders : Runtime.getRuntime().availableProcessors();
+        this.maxQueue = maxQueue;
+        this.queueTimeout = queueTimeout;
+        this.retryAfter = retryAfter;
+        this.renderPermits = new Semaphore(this.maxRenders, true);
+        this.maxBackgroundRenders = maxBackgroundRenders > 0
+                ? Math.min(maxBackgroundRenders, this.maxRenders)
+                : Math.max(1, this.maxRenders / 2);
+        this.backgroundPermits = new Semaphore(this.maxBackgroundRenders, true);
+
+        this.rateLimited = rejections(registry, "rate_limited");
+        this.overloaded = rejections(registry, "overloaded");
+        Gauge.builder("invoice.render.active", this, AdmissionControl::activeRenders)
+                .description("PDF renders holding a permit")
+                .register(registry);
+        Gauge.builder("invoice.render.queued", waiting, AtomicInteger::get)
+                .description("PDF renders waiting for a permit")
+                .register(registry);
+        Gauge.builder("invoice.render.background.queued", backgroundWaiting, AtomicInteger::get)
+                .description("Batch and async job renders waiting for a permit")
+                .register(registry);
+        Gauge.builder("invoice.render.limit", this, a -> a.maxRenders)
+                .description("PDF renders allowed at once")
+                .register(registry);
+        Gauge.builder("invoice.admission.clients", buckets, Map::size)
+                .description("Clients with a rate limit bucket")
+                .register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("invoice.admission.rejected")
+                .description("Requests turned away before any work was done")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /* ==================== PER-CLIENT RATE ==================== */
+
+    /**
+     * Takes one token from {@code client}'s bucket.
+     *
+     * @return 0 when the request may go ahead, otherwise the seconds until
+     * the bucket has a token again
+     */
+    public long tryAcquire(String client) {
+        if (tokensPerSecond <= 0) {
+            return 0;
+        }
+        if (buckets.size() >= maxClients) {
+            forgetIdleClients();
+        }
+        long waitNanos = buckets.computeIfAbsent(client, c -> new TokenBucket(burst)).take(tokensPerSecond, burst);
+        if (waitNanos == 0) {
+            return 0;
+        }
+        rateLimited.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+    }
+
+    // a full bucket holds no state worth keeping
+    private void forgetIdleClients() {
+        Iterator<TokenBucket> it = buckets.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isFull(tokensPerSecond, burst)) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double tokens) {
+            this.tokens = tokens;
+        }
+
+        synchronized long take(double perSecond, double burst) {
+            refill(perSecond, burst);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) / perSecond * 1e9);
+        }
+
+        synchronized boolean isFull(double perSecond, double burst) {
+            refill(perSecond, burst);
+            return tokens >= burst;
+        }
+
+        private void refill(double perSecond, double burst) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * perSecond);
+            refilledAt = now;
+        }
+    }
+
+    /* ==================== RENDER CONCURRENCY ==================== */
+
+    /**
+     * Whether enough renders are already queued that a new request should be
+     * shed rather than wait. Counts the rejection when it is.
+     */
+    public boolean shedLoad() {
+        if (waiting.get() < maxQueue) {
+            return false;
+        }
+        overloaded.increment();
+        return true;
+    }
+
+    /**
+     * Runs {@code render} holding one of the render permits, for a client
+     * waiting on the response.
+     *
+     * @throws OverloadedException when no permit came free within the queue timeout
+     */
+    public <T> T render(Supplier<T> render) {
+        return render(Lane.INTERACTIVE, render);
+    }
+
+    /**
+     * Runs {@code render} holding one of the render permits. Only the
+     * interactive lane gives up; the background lane waits for its turn.
+     *
+     * @throws OverloadedException when an interactive render got no permit within the queue timeout
+     */
+    public <T> T render(Lane lane, Supplier<T> render) {
+        if (lane == Lane.BACKGROUND) {
+            return renderInBackground(render);
+        }
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = renderPermits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OverloadedException(retryAfterSeconds());
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            overloaded.increment();
+            throw new OverloadedException(retryAfterSeconds());
+        }
+        try {
+            return render.get();
+        } finally {
+            renderPermits.release();
+        }
+    }
+
+    private <T> T renderInBackground(Supplier<T> render) {
+        backgroundWaiting.incrementAndGet();
+        try {
+            backgroundPermits.acquire();
+            try {
+                renderPermits.acquire();
+            } catch (InterruptedException e) {
+                backgroundPermits.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to render", e);
+        } finally {
+            backgroundWaiting.decrementAndGet();
+        }
+        try {
+            return render.get();
+        } finally {
+            renderPermits.release();
+            backgroundPermits.release();
+        }
+    }
+
+    public long retryAfterSeconds() {
+        return Math.max(1, retryAfter.toSeconds());
+    }
+
+    private int activeRenders() {
+        return maxRenders - renderPermits.availablePermits();
+    }
+}
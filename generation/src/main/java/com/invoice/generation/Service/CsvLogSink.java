@@ -0,0 +1,82 @@
+package com.invoice.generation.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Appends each invoice's log row to {@code <invoice.sinks.csv.dir>/<SHEET>.csv},
+ * the same row Google Sheets gets. Off unless the directory is set.
+ */
+@Service
+public class CsvLogSink implements InvoiceSink {
+
+    private final Path dir;
+
+    public CsvLogSink(@Value("${invoice.sinks.csv.dir:}") String dir) {
+        this.dir = dir == null || dir.isBlank() ? null : Path.of(dir);
+    }
+
+    @Override
+    public String name() {
+        return "csv";
+    }
+
+    @Override
+    public boolean enabled() {
+        return dir != null;
+    }
+
+    @Override
+    public void accept(InvoiceEvent event) throws IOException {
+        acceptAll(List.of(event));
+    }
+
+    /** One open and append per sheet file. */
+    @Override
+    public void acceptAll(List<InvoiceEvent> events) throws IOException {
+        Map<LogSheet, StringBuilder> lines = new LinkedHashMap<>();
+        for (InvoiceEvent event : events) {
+            if (event.sheet() != null) {
+                appendLine(lines.computeIfAbsent(event.sheet(), s -> new StringBuilder()), event.row());
+            }
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Files.createDirectories(dir);
+        for (Map.Entry<LogSheet, StringBuilder> sheet : lines.entrySet()) {
+            Path file = dir.resolve(sheet.getKey().name() + ".csv");
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.append(sheet.getValue());
+            }
+        }
+    }
+
+    private static void appendLine(StringBuilder out, List<Object> row) {
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            String value = String.valueOf(row.get(i));
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(value);
+            }
+        }
+        out.append("\r\n");
+    }
+}
@@ -0,0 +1,273 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+/**
+ * Delivers encoded email bodies to the relay without holding up the caller.
+ * Every body is first written to a file in the outbox directory, so an email
+ * that was accepted survives a restart; the file is removed once the relay
+ * answers 2xx. Sends run on the shared {@code emailWebClient} with at most
+ * {@code invoice.email.max-concurrency} in flight, and transient failures
+ * (failing to connect, 429, 5xx) are retried with exponential backoff. A
+ * timeout or a connection lost after the body went out is not retried, as
+ * the relay may already have accepted the email. Bodies that still fail are
+ * moved to {@code failed/} under the outbox.
+ */
+@Service
+public class EmailDispatcher {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    /** Writes one complete request body. */
+    @FunctionalInterface
+    public interface BodyWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private record Delivery(Path file, CompletableFuture<Void> done) {
+
+    }
+
+    private final WebClient webClient;
+    private final String apiUrl;
+    private final Path outbox;
+    private final Path failedDir;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    private final Sinks.Many<Delivery> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable worker;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final MeterRegistry registry;
+    private final Counter failures;
+    private final Counter retries;
+
+    public EmailDispatcher(
+            WebClient emailWebClient,
+            MeterRegistry registry,
+            @Value("${email.api.url}") String apiUrl,
+            @Value("${invoice.email.outbox-dir:data/email-outbox}") String outboxDir,
+            @Value("${invoice.email.max-concurrency:8}") int maxConcurrency,
+            @Value("${invoice.email.max-attempts:5}") int maxAttempts,
+            @Value("${invoice.email.retry-backoff-ms:500}") long retryBackoffMs
+    ) {
+        this.webClient = emailWebClient;
+        this.registry = registry;
+        this.apiUrl = apiUrl;
+        this.outbox = Path.of(outboxDir);
+        this.failedDir = outbox.resolve("failed");
+        this.maxConcurrency = maxConcurrency;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+
+        Gauge.builder("invoice.email.inflight", inFlight, AtomicInteger::get)
+                .description("Emails currently being sent to the relay")
+                .register(registry);
+        Gauge.builder("invoice.email.outbox.pending", this, EmailDispatcher::pending)
+                .description("Emails in the outbox that the relay has not accepted yet")
+                .register(registry);
+        this.failures = Counter.builder("invoice.email.failures")
+                .description("Emails given up on after all retries")
+                .register(registry);
+        this.retries = Counter.builder("invoice.email.retries")
+                .description("Repeated attempts to send an email")
+                .register(registry);
+    }
+
+    /**
+     * Starts delivering, beginning with whatever a previous run left in the
+     * outbox.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(failedDir);
+
+        worker = queue.asFlux()
+                .flatMap(this::deliver, maxConcurrency)
+                .subscribe();
+
+        List<Path> leftOver;
+        try (Stream<Path> files = Files.list(outbox)) {
+            leftOver = files.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : leftOver) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(file);  // crashed half way through writing, never accepted
+            } else {
+                enqueue(new Delivery(file, new CompletableFuture<>()));
+            }
+        }
+        if (!leftOver.isEmpty()) {
+            log.info("Resending {} emails left in {}", leftOver.size(), outbox);
+        }
+    }
+
+    /**
+     * Persists the body to the outbox and queues it for delivery. Returns
+     * once the body is on disk; the future completes when the relay has
+     * accepted it, or exceptionally once all retries are used up.
+     */
+    public CompletableFuture<Void> submit(BodyWriter body) throws IOException {
+        String name = System.currentTimeMillis() + "-" + UUID.randomUUID() + ".json";
+        Path tmp = outbox.resolve(name + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            body.writeTo(out);
+        }
+        Path file = Files.move(tmp, outbox.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+
+        Delivery delivery = new Delivery(file, new CompletableFuture<>());
+        enqueue(delivery);
+        return delivery.done();
+    }
+
+    private void enqueue(Delivery delivery) {
+        // the sink accepts one emitter at a time
+        synchronized (queue) {
+            Sinks.EmitResult result = queue.tryEmitNext(delivery);
+            if (result.isFailure()) {
+                delivery.done().completeExceptionally(
+                        new IllegalStateException("Email queue is closed: " + result));
+            }
+        }
+    }
+
+    private Mono<Void> deliver(Delivery delivery) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+
+        return Mono.defer(() -> webClient.post()
+                .uri(apiUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromDataBuffers(
+                        DataBufferUtils.read(delivery.file(), DefaultDataBufferFactory.sharedInstance, 8192)))
+                .retrieve()
+                .bodyToMono(String.class)
+                .doOnNext(resp -> log.debug("Email API response: {}", resp)))
+                .retryWhen(Retry.backoff(maxAttempts - 1, retryBackoff)
+                        .filter(EmailDispatcher::isTransient)
+                        .doBeforeRetry(signal -> {
+                            retries.increment();
+                            log.warn("Email send failed (attempt {}), retrying: {}",
+                                    signal.totalRetries() + 1, signal.failure().getMessage());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .then(Mono.fromRunnable(() -> {
+                    delete(delivery.file());
+                    record(start, "success");
+                    delivery.done().complete(null);
+                }))
+                .onErrorResume(err -> {
+                    log.error("Email API call failed, moving {} to {}", delivery.file().getFileName(), failedDir, err);
+                    failures.increment();
+                    record(start, "failure");
+                    park(delivery.file());
+                    delivery.done().completeExceptionally(err);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .then();
+    }
+
+    /**
+     * 429 and 5xx, and requests that never reached the relay. A response or
+     * read timeout does not count: the relay may have accepted the email
+     * before it, and a retry would send the customer a second copy.
+     */
+    private static boolean isTransient(Throwable err) {
+        if (err instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        for (Throwable cause = err; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(long startNanos, String outcome) {
+        Timer.builder("invoice.email.send")
+                .description("Time from dispatch until the relay accepted the email, retries included")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void park(Path file) {
+        try {
+            Files.move(file, failedDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not move {} out of the outbox", file, e);
+        }
+    }
+
+    public long pending() {
+        try (Stream<Path> files = Files.list(outbox)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".json")).count();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops taking new work. Emails still in the outbox are picked up again
+     * on the next start.
+     */
+    @PreDestroy
+    public void stop() {
+        queue.tryEmitComplete();
+        if (worker != null) {
+            worker.dispose();
+        }
+    }
+}
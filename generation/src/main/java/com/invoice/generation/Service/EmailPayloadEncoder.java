@@ -0,0 +1,106 @@
+package com.invoice.generation.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the body the email relay expects,
+ * {@code {"encryptedPayload": base64(AES-128-ECB(json))}}, as one stream:
+ * JSON generator -> cipher -> base64 -> {@code out}. The attachment is
+ * base64-encoded by the generator while it is read, so no stage holds more
+ * than a buffer's worth of the payload, however large the PDF.
+ */
+public final class EmailPayloadEncoder {
+
+    private static final JsonFactory JSON = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final byte[] PREFIX = "{\"encryptedPayload\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+
+    public EmailPayloadEncoder(String secretKey) {
+        if (secretKey == null || secretKey.length() != 16) {
+            throw new IllegalStateException("email.secret.key must be exactly 16 characters");
+        }
+        this.key = new SecretKeySpec(secretKey.getBytes(), "AES");
+    }
+
+    /**
+     * @param fields plain string fields of the payload; null or blank values
+     * are left out
+     * @param attachment PDF contents, or null for none
+     */
+    public void write(Map<String, String> fields, String attachmentName,
+            InputStream attachment, int attachmentLength, OutputStream out) throws IOException {
+
+        Cipher cipher;
+        try {
+            cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+
+        out.write(PREFIX);
+
+        // closing the cipher stream pads the last block, closing the base64
+        // stream pads the text; neither may close the response itself
+        try (OutputStream encrypted = new CipherOutputStream(
+                Base64.getEncoder().wrap(new KeepOpen(out)), cipher);
+                JsonGenerator json = JSON.createGenerator(encrypted)) {
+
+            json.writeStartObject();
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                if (field.getValue() != null && !field.getValue().isBlank()) {
+                    json.writeStringField(field.getKey(), field.getValue());
+                }
+            }
+
+            if (attachment != null) {
+                json.writeArrayFieldStart("attachments");
+                json.writeStartObject();
+                json.writeStringField("fileName", attachmentName);
+                json.writeFieldName("fileBase64");
+                json.writeBinary(attachment, attachmentLength);
+                json.writeEndObject();
+                json.writeEndArray();
+            }
+
+            json.writeEndObject();
+        }
+
+        out.write(SUFFIX);
+    }
+
+    private static final class KeepOpen extends FilterOutputStream {
+
+        KeepOpen(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -1,22 +1,18 @@
 package com.invoice.generation.Service;
 
-import java.io.File;
-import java.nio.file.Files;
-import java.util.Base64;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class GenericEmailService {
@@ -24,12 +20,17 @@ public class GenericEmailService {
     private static final Logger log
             = LoggerFactory.getLogger(GenericEmailService.class);
 
+    private final EmailDispatcher dispatcher;
+    private final InvoiceMetrics metrics;
+
+    public GenericEmailService(EmailDispatcher dispatcher, InvoiceMetrics metrics) {
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+    }
+
     @Value("${email.from.display}")
     private String fromDisplay;
 
-    @Value("${email.api.url}")
-    private String apiUrl;
-
     @Value("${email.smtp.user}")
     private String smtpUser;
 
@@ -51,24 +52,34 @@ public class GenericEmailService {
     @Value("${email.replyto}")
     private String replyTo;
 
-    public void sendEmail(
-            String to,
-            String customerName,
-            String invoiceStatus,
+    /**
+     * Builds the email and hands it to the {@link EmailDispatcher}. Returns
+     * as soon as it is safely queued; the future tells when the relay has
+     * accepted it, which is also what {@code invoice.email.dispatch} times.
+     * The attachment is copied into the outbox before this returns, so the
+     * caller may close it straight away.
+     */
+    public CompletableFuture<Void> sendEmail(
+            InvoiceDTO invoice,
             String date,
-            File attachment
+            RenderedPdf attachment,
+            String attachmentName
     ) {
 
         if (secretKey == null || secretKey.length() != 16) {
             throw new IllegalStateException("email.secret.key must be exactly 16 characters");
         }
 
-        log.info("========== EMAIL FLOW START ==========");
+        String to = invoice.customerEmail;
+        String customerName = invoice.customerName;
+        String invoiceStatus = invoice.invoiceStatus;
+        Timer.Sample sample = metrics.start();
 
         try {
             String subject = "Thank You | "
                     + customerName + " | "
                     + invoiceStatus + " | "
+                    + (invoice.invoiceNumber == null ? "" : invoice.invoiceNumber + " | ")
                     + date;
 
             String textBody
@@ -84,83 +95,40 @@ public class GenericEmailService {
                     + "For support, please email us at diptimoy2003@gmail.com";
 
             /* ========== BUILD PAYLOAD ========== */
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("to", to);
-            payload.put("from", fromDisplay + "<" + from + ">");
-            payload.put("subject", subject);
-            payload.put("text", textBody);
-            payload.put("smtpUser", smtpUser);
-            payload.put("smtpPassword", smtpPassword);
-
-            if (attachment != null && attachment.exists()) {
-                payload.put("attachments", new Object[]{
-                    Map.of(
-                    "fileName", attachment.getName(),
-                    "fileBase64", Base64.getEncoder()
-                    .encodeToString(
-                    Files.readAllBytes(
-                    attachment.toPath()
-                    )
-                    )
-                    )
-                });
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("to", to);
+            fields.put("from", fromDisplay + "<" + from + ">");
+            fields.put("subject", subject);
+            fields.put("text", textBody);
+            fields.put("smtpUser", smtpUser);
+            fields.put("smtpPassword", smtpPassword);
+            fields.put("cc", cc);
+            fields.put("bcc", bcc);
+            fields.put("replyTo", replyTo);
+
+            boolean attach = attachment != null && attachment.size() > 0;
+            if (attach && attachment.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Attachment is too large to email: " + attachment.size() + " bytes");
             }
+            int attachmentBytes = attach ? (int) attachment.size() : 0;
 
-            if (cc != null && !cc.isBlank()) {
-                payload.put("cc", cc);
-            }
-            if (bcc != null && !bcc.isBlank()) {
-                payload.put("bcc", bcc);
-            }
-            if (replyTo != null && !replyTo.isBlank()) {
-                payload.put("replyTo", replyTo);
-            }
-            /* ========== LOG BEFORE ENCRYPTION ========== */
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonPayload = mapper.writeValueAsString(payload);
-
-            log.info("EMAIL PAYLOAD BEFORE ENCRYPTION:");
-            System.out.println(payload);
-            log.info(jsonPayload);
-
-            /* ========== ENCRYPT ========== */
-            String encryptedPayload = encrypt(jsonPayload);
-
-            log.info("Encrypted payload generated successfully");
-
-            /* ========== SEND TO NODE SERVICE ========== */
-            WebClient.create()
-                    .post()
-                    .uri(apiUrl)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(
-                            Map.of("encryptedPayload", encryptedPayload)
-                    )
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .doOnNext(resp
-                            -> log.info("Email API response: {}", resp)
-                    )
-                    .doOnError(err
-                            -> log.error("Email API call failed", err)
-                    )
-                    .block();
+            /* ========== ENCODE + ENCRYPT INTO THE OUTBOX ========== */
+            EmailPayloadEncoder encoder = new EmailPayloadEncoder(secretKey);
+            CompletableFuture<Void> sent = dispatcher.submit(out -> {
+                try (InputStream pdf = attach ? attachment.open() : null) {
+                    encoder.write(fields, attachmentName, pdf, attachmentBytes, out);
+                }
+            });
+
+            log.debug("Email queued status={} attachmentBytes={}", invoiceStatus, attachmentBytes);
+            sent.whenComplete((ok, err)
+                    -> metrics.stop(sample, "invoice.email.dispatch", invoice, err == null ? "success" : "failure"));
+            return sent;
 
         } catch (Exception e) {
-            log.error("EMAIL FLOW FAILED", e);
+            metrics.stop(sample, "invoice.email.dispatch", invoice, "failure");
+            log.error("Queueing email failed for status={}", invoiceStatus, e);
             throw new RuntimeException("Email sending failed", e);
         }
-
-        log.info("========== EMAIL FLOW END ==========");
-    }
-
-    /* ========== AES-128-ECB ENCRYPTION ========== */
-    private String encrypt(String data) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-        SecretKeySpec key
-                = new SecretKeySpec(secretKey.getBytes(), "AES");
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        return Base64.getEncoder()
-                .encodeToString(cipher.doFinal(data.getBytes()));
     }
 }
@@ -1,75 +1,147 @@
 package com.invoice.generation.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
 import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Thin client for the Sheets {@code values:append} API. The service-account
+ * credentials and a pooled keep-alive transport are created once at startup
+ * and shared by all threads; {@link GoogleCredentials} caches the access
+ * token and refreshes it shortly before it expires, so a logged row costs a
+ * single HTTPS request on an already open connection.
+ */
 @Service
 public class GoogleSheetsService {
 
+    private static final Logger log
+            = LoggerFactory.getLogger(GoogleSheetsService.class);
+
+    private static final List<String> SCOPES
+            = List.of("https://www.googleapis.com/auth/spreadsheets");
+
     @org.springframework.beans.factory.annotation.Value("${google.spreadsheet.id}")
     private String SHEET_ID;
 
-    private static final String BASE_URL
-            = "https://sheets.googleapis.com/v4/spreadsheets/";
+    @org.springframework.beans.factory.annotation.Value("${google.sheets.base-url:https://sheets.googleapis.com/v4/spreadsheets/}")
+    private String baseUrl;
 
-    public void writeRow(String sheetName, String range, List<Object> row) {
-        try {
-            String base64 = System.getenv("GOOGLE_CREDENTIALS_BASE64");
-
-            if (base64 == null || base64.isEmpty()) {
-                throw new RuntimeException("GOOGLE_CREDENTIALS_BASE64 not set");
-            }
-
-            byte[] decoded = java.util.Base64.getDecoder().decode(base64);
-            InputStream in = new java.io.ByteArrayInputStream(decoded);
-
-            GoogleCredentials credentials = GoogleCredentials
-                    .fromStream(in)
-                    .createScoped(List.of(
-                            "https://www.googleapis.com/auth/spreadsheets"
-                    ));
-
-            HttpRequestFactory factory
-                    = new NetHttpTransport()
-                            .createRequestFactory(
-                                    new HttpCredentialsAdapter(credentials));
-
-            GenericUrl url = new GenericUrl(
-                    BASE_URL + SHEET_ID
-                    + "/values/" + sheetName + "!" + range
-                    + ":append?valueInputOption=USER_ENTERED"
-            );
-
-            Map<String, Object> body = Map.of(
-                    "values", List.of(row)
-            );
-
-            HttpRequest request
-                    = factory.buildPostRequest(
-                            url,
-                            new JsonHttpContent(
-                                    JacksonFactory.getDefaultInstance(),
-                                    body
-                            )
-                    );
-
-            request.execute();
+    @org.springframework.beans.factory.annotation.Value("${google.sheets.self-check:true}")
+    private boolean selfCheck;
+
+    private final HttpTransport transport = new ApacheHttpTransport();
+
+    private volatile GoogleCredentials credentials;
+    private volatile HttpRequestFactory requestFactory;
+
+    @PostConstruct
+    void loadCredentials() throws IOException {
+        String base64 = System.getenv("GOOGLE_CREDENTIALS_BASE64");
+
+        if (base64 == null || base64.isEmpty()) {
+            log.warn("GOOGLE_CREDENTIALS_BASE64 not set, sheet logging is disabled");
+            return;
+        }
+
+        byte[] decoded = java.util.Base64.getDecoder().decode(base64);
+        try (InputStream in = new java.io.ByteArrayInputStream(decoded)) {
+            useCredentials(GoogleCredentials.fromStream(in).createScoped(SCOPES));
+        }
+    }
 
+    /**
+     * Replaces the credentials used for every subsequent request. Called once
+     * at startup; exposed for tests and benchmarks that bring their own.
+     */
+    public void useCredentials(GoogleCredentials credentials) {
+        this.credentials = credentials;
+        this.requestFactory = transport.createRequestFactory(
+                new HttpCredentialsAdapter(credentials));
+    }
+
+    /**
+     * Fetches the first access token and reads the spreadsheet metadata so a
+     * broken key or a sheet that was not shared with the service account
+     * shows up in the startup log rather than on the first invoice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void selfCheck() {
+        if (!selfCheck || credentials == null) {
+            return;
+        }
+        try {
+            credentials.refreshIfExpired();
+            requestFactory()
+                    .buildGetRequest(new GenericUrl(baseUrl + SHEET_ID + "?fields=spreadsheetId"))
+                    .execute()
+                    .disconnect();
+            log.info("Google Sheets self-check passed for spreadsheet {}", SHEET_ID);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Google Sheets self-check failed, invoice rows will not be logged", e);
         }
     }
 
+    /**
+     * Appends all {@code rows} below the last row of {@code sheetName!range}
+     * in a single {@code values:append} call.
+     */
+    public void appendRows(String sheetName, String range, List<List<Object>> rows) throws IOException {
+        HttpRequestFactory factory = requestFactory();
+
+        GenericUrl url = new GenericUrl(
+                baseUrl + SHEET_ID
+                + "/values/" + sheetName + "!" + range
+                + ":append?valueInputOption=USER_ENTERED"
+        );
+
+        Map<String, Object> body = Map.of(
+                "values", rows
+        );
+
+        HttpRequest request
+                = factory.buildPostRequest(
+                        url,
+                        new JsonHttpContent(
+                                JacksonFactory.getDefaultInstance(),
+                                body
+                        )
+                );
+
+        // release the pooled connection once the response has been read
+        request.execute().disconnect();
+    }
+
+    protected HttpRequestFactory requestFactory() throws IOException {
+        HttpRequestFactory factory = requestFactory;
+        if (factory == null) {
+            throw new RuntimeException("GOOGLE_CREDENTIALS_BASE64 not set");
+        }
+        return factory;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        transport.shutdown();
+    }
+
 }
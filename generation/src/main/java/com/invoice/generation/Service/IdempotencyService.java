@@ -0,0 +1,158 @@
+package com.invoice.generation.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Remembers the outcome of recent requests so a retried one is answered
+ * without rendering, emailing or logging the invoice again. The first
+ * request for a key does the work; duplicates arriving while it runs wait
+ * for its result, and later ones get the stored result until it expires.
+ * Failures are not stored, so a retry after an error runs again.
+ * <p>
+ * The store is in memory, bounded by {@code invoice.idempotency.max-entries}
+ * (oldest dropped first) and per-entry TTL.
+ */
+@Service
+public class IdempotencyService {
+
+    /** The key was reused for a different request. */
+    public static class KeyReusedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public KeyReusedException(String key) {
+            super("Idempotency-Key " + key + " was already used for a different request");
+        }
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<Object> result, long expiresAt) {
+
+    }
+
+    private final int maxEntries;
+
+    // insertion order, so the eldest entry is also the one expiring first for a given TTL
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Counter executed;
+    private final Counter replayed;
+
+    public IdempotencyService(
+            MeterRegistry registry,
+            @Value("${invoice.idempotency.max-entries:10000}") int maxEntries
+    ) {
+        this.maxEntries = maxEntries;
+        this.executed = outcomes(registry, "executed");
+        this.replayed = outcomes(registry, "replayed");
+        Gauge.builder("invoice.idempotency.entries", this, IdempotencyService::size)
+                .description("Requests whose outcome is remembered for de-duplication")
+                .register(registry);
+    }
+
+    private static Counter outcomes(MeterRegistry registry, String outcome) {
+        return Counter.builder("invoice.idempotency.requests")
+                .description("Requests by whether they ran or were answered from an earlier one")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code work} once per {@code key} within {@code ttl} and returns
+     * its result to every caller with that key.
+     *
+     * @param fingerprint identifies the request content; a key seen with a
+     * different fingerprint is rejected
+     * @throws KeyReusedException when the key was used for another request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String fingerprint, Duration ttl, Supplier<T> work) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        Entry existing;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            existing = entries.get(key);
+            if (existing != null && existing.expiresAt() <= now) {
+                entries.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(key, new Entry(fingerprint, mine, now + ttl.toMillis()));
+                evict(now);
+            }
+        }
+
+        if (existing != null) {
+            if (!existing.fingerprint().equals(fingerprint)) {
+                throw new KeyReusedException(key);
+            }
+            replayed.increment();
+            try {
+                return (T) existing.result().join();
+            } catch (CompletionException e) {
+                // the original failed and has been forgotten; this caller reports the same error
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        executed.increment();
+        try {
+            T result = work.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry eldest = it.next();
+            if (entries.size() <= maxEntries && eldest.expiresAt() > now) {
+                return;
+            }
+            // never drop a request that is still running, its duplicates would run again
+            if (!eldest.result().isDone()) {
+                if (entries.size() <= maxEntries) {
+                    return;
+                }
+                continue;
+            }
+            it.remove();
+        }
+    }
+
+    /** SHA-256 of a request body, as a fingerprint or as the key when the client sent none. */
+    public static String fingerprint(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
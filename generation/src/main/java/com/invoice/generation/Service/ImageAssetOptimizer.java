@@ -0,0 +1,136 @@
+package com.invoice.generation.Service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Shrinks the template's static images to what the PDF actually shows.
+ * Each image is decoded once, flattened onto the white page, downsampled to
+ * its CSS display width at {@code dpi} and re-encoded as whichever of PNG or
+ * JPEG comes out smaller. Both are formats PDFBox embeds by copying the
+ * compressed data, so a render no longer decodes or recompresses anything.
+ */
+class ImageAssetOptimizer {
+
+    /** CSS width in px each image is drawn at in invoice.html. */
+    private static final Map<String, Integer> DISPLAY_WIDTH_PX = Map.of(
+            "tinkori.png", 90,
+            "signature.png", 120
+    );
+
+    private static final int CSS_PX_PER_INCH = 96;
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private final int dpi;
+
+    ImageAssetOptimizer(int dpi) {
+        this.dpi = dpi;
+    }
+
+    static boolean isImage(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    byte[] optimize(String fileName, byte[] data) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(data));
+        if (source == null) {
+            return data;
+        }
+
+        BufferedImage image = flatten(source);
+
+        Integer displayWidth = DISPLAY_WIDTH_PX.get(fileName);
+        if (displayWidth != null) {
+            int targetWidth = displayWidth * dpi / CSS_PX_PER_INCH;
+            if (targetWidth < image.getWidth()) {
+                image = downsample(image, targetWidth);
+            }
+        }
+
+        byte[] png = encodePng(image);
+        byte[] jpeg = encodeJpeg(image);
+        return jpeg.length < png.length ? jpeg : png;
+    }
+
+    private static BufferedImage flatten(BufferedImage source) {
+        BufferedImage opaque = new BufferedImage(
+                source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = opaque.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, opaque.getWidth(), opaque.getHeight());
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return opaque;
+    }
+
+    /**
+     * Halves the image with bilinear filtering until one more halving would
+     * overshoot, then does the last step straight to the target. Each step
+     * only averages neighbouring pixels, which keeps thin lines (the
+     * signature) from breaking up the way a single large bilinear jump does.
+     */
+    private static BufferedImage downsample(BufferedImage image, int targetWidth) {
+        int targetHeight = Math.max(1, Math.round(
+                (float) image.getHeight() * targetWidth / image.getWidth()));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+package com.invoice.generation.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+/**
+ * Reads the invoices of a batch off the request body one element at a time:
+ * the elements of a JSON array, or top-level values one after another for
+ * NDJSON. Each comes back as an {@link Element}, either the bound invoice
+ * or the reason InvoiceDeserializer rejected it (no items, no status, over a
+ * per-invoice limit, a value of the wrong type), which fails only that
+ * invoice. The batch as a whole is held to {@code maxBytes} and
+ * {@code maxInvoices}; going over either, or JSON that is not well-formed,
+ * ends the batch with an exception. Only the element being read is held,
+ * so the body is never in memory whole.
+ */
+public class InvoiceBatchReader implements Closeable {
+
+    /** One batch element: the invoice, or why it could not be bound. */
+    public record Element(InvoiceDTO invoice, String error) {
+
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    /** The batch went over one of its limits. */
+    public static class TooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private final JsonParser p;
+    private final ObjectReader reader;
+    private final JsonToken end;
+    private final JsonStreamContext batch;
+    private final long maxBytes;
+    private final int maxInvoices;
+    private int count;
+    private Element peeked;
+    private boolean done;
+
+    InvoiceBatchReader(JsonParser p, ObjectReader reader, boolean array, long maxBytes, int maxInvoices)
+            throws IOException {
+        this.p = p;
+        this.reader = reader;
+        this.maxBytes = maxBytes;
+        this.maxInvoices = maxInvoices;
+        if (array && p.nextToken() != JsonToken.START_ARRAY) {
+            throw JsonMappingException.from(p, "batch must be a JSON array");
+        }
+        this.end = array ? JsonToken.END_ARRAY : null;
+        this.batch = p.getParsingContext();
+    }
+
+    /** Whether the batch has no elements at all; reads the first one to find out. */
+    public boolean isEmpty() throws IOException {
+        if (peeked == null && count == 0) {
+            peeked = next();
+        }
+        return count == 0;
+    }
+
+    /** The next element, or null after the last one. */
+    public Element next() throws IOException {
+        if (peeked != null) {
+            Element element = peeked;
+            peeked = null;
+            return element;
+        }
+        if (done || p.nextToken() == end) {
+            done = true;
+            return null;
+        }
+        if (count == maxInvoices) {
+            throw new TooLargeException("batch must not have more than " + maxInvoices + " invoices");
+        }
+        count++;
+
+        Element element;
+        try {
+            InvoiceDTO invoice = reader.readValue(p);
+            element = invoice != null
+                    ? new Element(invoice, null)
+                    : new Element(null, "invoice must be a JSON object");
+        } catch (JsonMappingException e) {
+            element = new Element(null, e.getOriginalMessage());
+            // skip the rest of the element, wherever in it the reader stopped
+            while (p.getParsingContext() != batch && p.nextToken() != null) {
+                checkSize();
+            }
+        }
+        checkSize();
+        return element;
+    }
+
+    private void checkSize() throws TooLargeException {
+        if (p.currentLocation().getByteOffset() > maxBytes) {
+            throw new TooLargeException("batch must not be larger than " + maxBytes + " bytes");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        p.close();
+    }
+}
@@ -0,0 +1,265 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.invoice.generation.Config.InvoiceThreads;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Issues a list of invoices in parallel for POST /invoice/generate/batch.
+ * Each invoice is validated, priced, rendered and emailed on a pool sized to
+ * the CPU count (virtual threads when {@link InvoiceThreads} says so), and
+ * handed to the caller as soon as it finishes. A failure only marks its own
+ * invoice as failed, including one that could not be bound from the request
+ * (see {@link InvoiceBatchReader}). Store records and sink events are held
+ * back until the whole batch is done and then go out together: one JDBC
+ * batch, and one unit per sink (a single append per sheet).
+ */
+@Lazy
+@Service
+public class InvoiceBatchService {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(InvoiceBatchService.class);
+
+    /**
+     * Outcome of one invoice; {@code pdf} is null when {@code error} is set,
+     * and is closed once the caller's {@code onResult} has returned.
+     */
+    public record Result(int index, InvoiceDTO invoice, double amount, RenderedPdf pdf,
+            String fileName, String error, long millis) {
+
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    private final InvoiceService invoiceService;
+    private final PdfService pdfService;
+    private final GenericEmailService mail;
+    private final InvoiceSinks invoiceSinks;
+    private final InvoiceStore invoiceStore;
+    private final InvoiceStats invoiceStats;
+    private final InvoiceNumbers invoiceNumbers;
+
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final long maxBytes;
+    private final int maxInvoices;
+
+    public InvoiceBatchService(
+            InvoiceService invoiceService,
+            PdfService pdfService,
+            GenericEmailService mail,
+            InvoiceSinks invoiceSinks,
+            InvoiceStore invoiceStore,
+            InvoiceStats invoiceStats,
+            InvoiceNumbers invoiceNumbers,
+            InvoiceThreads threads,
+            @Value("${invoice.batch.threads:0}") int poolSize,
+            @Value("${invoice.batch.max-bytes:134217728}") long maxBytes,
+            @Value("${invoice.batch.max-invoices:10000}") int maxInvoices
+    ) {
+        this.invoiceService = invoiceService;
+        this.pdfService = pdfService;
+        this.mail = mail;
+        this.invoiceSinks = invoiceSinks;
+        this.invoiceStore = invoiceStore;
+        this.invoiceStats = invoiceStats;
+        this.invoiceNumbers = invoiceNumbers;
+        this.maxBytes = maxBytes;
+        this.maxInvoices = maxInvoices;
+
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        // a couple of finished PDFs may wait per thread while the response catches up
+        this.maxInFlight = size * 2;
+
+        // still a fixed number even when virtual: it is what bounds the invoices in flight
+        this.pool = Executors.newFixedThreadPool(size, threads.factory("invoice-batch-"));
+    }
+
+    /* ==================== READING ==================== */
+
+    /**
+     * Opens a batch body for {@link #process}: a JSON array when
+     * {@code array} is set, otherwise NDJSON. A body that declares itself
+     * larger than {@code invoice.batch.max-bytes} is refused before any of it
+     * is read; otherwise bytes and invoices ({@code invoice.batch.max-invoices})
+     * are counted as they are read.
+     */
+    public InvoiceBatchReader open(ObjectReader reader, InputStream body, long contentLength, boolean array)
+            throws IOException {
+        if (contentLength > maxBytes) {
+            throw new InvoiceBatchReader.TooLargeException("batch must not be larger than " + maxBytes + " bytes");
+        }
+        JsonParser p = reader.createParser(body);
+        try {
+            return new InvoiceBatchReader(p, reader, array, maxBytes, maxInvoices);
+        } catch (IOException | RuntimeException e) {
+            p.close();
+            throw e;
+        }
+    }
+
+    /* ==================== ISSUING ==================== */
+
+    /**
+     * Runs the batch, calling {@code onResult} on the caller's thread once per
+     * invoice in completion order. Invoices are read off {@code batch} only
+     * as pool slots free up, so no more than {@code maxInFlight} of them are
+     * held at once however long the batch is. When the body turns out to be
+     * broken or over a limit part way through, the invoices read so far are
+     * still issued and one last failed result, indexed after them, says why
+     * the rest was not. Returns when every invoice read has finished.
+     */
+    public void process(InvoiceBatchReader batch, Consumer<Result> onResult) throws InterruptedException {
+        String date = LocalDateTime.now()
+                .format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm"));
+
+        List<InvoiceStore.Issued> records = Collections.synchronizedList(new ArrayList<>());
+        List<InvoiceEvent> events = Collections.synchronizedList(new ArrayList<>());
+        CompletionService<Result> completed = new ExecutorCompletionService<>(pool);
+
+        int submitted = 0;
+        int done = 0;
+        boolean more = true;
+        String stopped = null;
+        try {
+            while (true) {
+                while (more && submitted - done < maxInFlight) {
+                    InvoiceBatchReader.Element element;
+                    try {
+                        element = batch.next();
+                    } catch (IOException e) {
+                        element = null;
+                        stopped = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+                        log.warn("Batch stopped after {} invoices: {}", submitted, stopped);
+                    }
+                    if (element == null) {
+                        more = false;
+                    } else {
+                        int index = submitted++;
+                        InvoiceBatchReader.Element invoice = element;
+                        completed.submit(() -> issue(index, invoice, date, records, events));
+                    }
+                }
+                if (done == submitted) {
+                    break;
+                }
+                Future<Result> next = completed.take();
+                done++;
+                Result result = next.get();
+                try {
+                    onResult.accept(result);
+                } finally {
+                    close(result);
+                }
+            }
+            if (stopped != null) {
+                onResult.accept(new Result(submitted, null, 0, null, null, stopped, 0));
+            }
+        } catch (ExecutionException e) {
+            // issue() catches everything itself, so this is a bug rather than a bad invoice
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // when the caller gave up part way, the invoices still in flight finish unseen
+            discard(completed, submitted - done);
+            try {
+                invoiceStore.saveAll(records);
+                records.forEach(invoiceStats::record);
+            } catch (RuntimeException e) {
+                log.error("Could not store {} batch invoices", records.size(), e);
+            }
+            invoiceSinks.publishAll(events);
+        }
+    }
+
+    private Result issue(int index, InvoiceBatchReader.Element element, String date,
+            List<InvoiceStore.Issued> records, List<InvoiceEvent> events) {
+        long start = System.nanoTime();
+        InvoiceDTO invoice = element.invoice();
+        double amount = 0;
+        try {
+            if (!element.ok()) {
+                throw new IllegalArgumentException(element.error());
+            }
+            invoiceService.validate(invoice);
+            InvoiceTotalsDTO totals = invoiceService.price(invoice);
+            amount = totals.payableRupees();
+            invoice.invoiceNumber = invoiceNumbers.nextNumber();
+
+            String printed = PdfService.printedDate(invoice);
+            RenderedPdf pdf = pdfService.issuePdf(invoice, totals, printed, AdmissionControl.Lane.BACKGROUND);
+            String fileName = PdfService.fileName(invoice);
+
+            try {
+                mail.sendEmail(invoice, date, pdf, fileName);
+                records.add(new InvoiceStore.Issued(invoice, totals, printed,
+                        pdfService.pdfRef(invoice, totals, printed)));
+                events.add(InvoiceEvent.of(invoice, totals, date));
+            } catch (RuntimeException e) {
+                pdf.close();
+                throw e;
+            }
+
+            return new Result(index, invoice, amount, pdf, fileName, null, elapsedMillis(start));
+        } catch (Exception e) {
+            log.warn("Batch invoice {} failed: {}", index, e.getMessage());
+            return new Result(index, invoice, amount, null, null,
+                    String.valueOf(e.getMessage()), elapsedMillis(start));
+        }
+    }
+
+    private static void discard(CompletionService<Result> completed, int pending) {
+        for (int i = 0; i < pending; i++) {
+            try {
+                close(completed.take().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // nothing to clean up
+            }
+        }
+    }
+
+    private static void close(Result result) {
+        if (result.pdf() != null) {
+            result.pdf().close();
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
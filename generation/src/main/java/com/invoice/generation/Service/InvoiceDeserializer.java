@@ -0,0 +1,283 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jackson.JsonComponent;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+/**
+ * Binds request invoices in one pass over Jackson's token stream instead of
+ * through bean introspection, and rejects a bad invoice while it is being
+ * read, before a controller or renderer sees it: bodies over
+ * {@code invoice.request.max-bytes}, more than {@code invoice.request.max-items}
+ * items, strings over {@code invoice.request.max-string-chars}, values of the
+ * wrong type, and a missing {@code items} or {@code invoiceStatus}.
+ * <p>
+ * Short, repetitive values (statuses, payment methods, discount types,
+ * issuers, item names) are looked up in a small shared table straight from
+ * the parser's buffer, so a repeat costs no new String. Unknown fields are
+ * skipped, as Spring's ObjectMapper does by default, and so is
+ * {@code invoiceNumber}: numbers are only ever assigned by
+ * {@link InvoiceNumbers} when an invoice is issued, never taken from a
+ * client. Stored invoices are read back by {@link InvoiceStore} with its own
+ * reader, outside these rules and limits.
+ */
+@JsonComponent
+public class InvoiceDeserializer extends JsonDeserializer<InvoiceDTO> {
+
+    // longer values are rarely repeated, so not worth a table slot
+    private static final int MAX_INTERNED_CHARS = 64;
+
+    /**
+     * A lossy cache of recently seen values, indexed by hash. Colliding
+     * values replace each other; Strings are immutable, so threads may race
+     * on a slot without harm.
+     */
+    private static final class Interner {
+
+        private final String[] slots;
+
+        Interner(int size) {
+            this.slots = new String[Integer.highestOneBit(size)];
+        }
+
+        String intern(char[] chars, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + chars[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (slots.length - 1);
+            String seen = slots[slot];
+            if (seen != null && matches(seen, chars, offset, length)) {
+                return seen;
+            }
+            String value = new String(chars, offset, length);
+            slots[slot] = value;
+            return value;
+        }
+
+        private static boolean matches(String seen, char[] chars, int offset, int length) {
+            if (seen.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (seen.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxItems;
+    private final int maxStringChars;
+    private final Interner interner = new Interner(4096);
+
+    public InvoiceDeserializer(
+            @Value("${invoice.request.max-bytes:33554432}") long maxBytes,
+            @Value("${invoice.request.max-items:100000}") int maxItems,
+            @Value("${invoice.request.max-string-chars:10000}") int maxStringChars
+    ) {
+        this.maxBytes = maxBytes;
+        this.maxItems = maxItems;
+        this.maxStringChars = maxStringChars;
+    }
+
+    @Override
+    public InvoiceDTO deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            throw invalid(p, "invoice must be a JSON object");
+        }
+        long start = offset(p.currentTokenLocation());
+
+        InvoiceDTO invoice = new InvoiceDTO();
+        for (String field = p.nextFieldName(); field != null; field = p.nextFieldName()) {
+            p.nextToken();
+            switch (field) {
+                case "customerName" -> invoice.customerName = text(p, field);
+                case "customerPhone" -> invoice.customerPhone = text(p, field);
+                case "customerAddress" -> invoice.customerAddress = text(p, field);
+                case "customerEmail" -> invoice.customerEmail = text(p, field);
+                case "invoiceStatus" -> invoice.invoiceStatus = token(p, field);
+                case "invoiceDate" -> invoice.invoiceDate = token(p, field);
+                case "ownerMessage" -> invoice.ownerMessage = text(p, field);
+                case "items" -> invoice.items = items(p, start);
+                case "applyOverallDiscount" -> invoice.applyOverallDiscount = flag(p, field, false);
+                case "overallDiscount" -> invoice.overallDiscount = number(p, field);
+                case "overallDiscountType" -> invoice.overallDiscountType = token(p, field);
+                case "adjustmentAmount" -> invoice.adjustmentAmount = number(p, field);
+                case "adjustmentAmountType" -> invoice.adjustmentAmountType = token(p, field);
+                case "paymentMethod" -> invoice.paymentMethod = token(p, field);
+                case "paymentDetails" -> invoice.paymentDetails = text(p, field);
+                case "issuedBy" -> invoice.issuedBy = token(p, field);
+                case "enableLogging" -> invoice.enableLogging = flag(p, field, true);
+                default -> p.skipChildren();
+            }
+            checkSize(p, start);
+        }
+
+        // the same rules as InvoiceService.validate, with the same messages
+        if (invoice.items == null || invoice.items.isEmpty()) {
+            throw invalid(p, "items must not be empty");
+        }
+        if (invoice.invoiceStatus == null || invoice.invoiceStatus.isBlank()) {
+            throw invalid(p, "invoiceStatus is required");
+        }
+        return invoice;
+    }
+
+    private List<ItemDTO> items(JsonParser p, long start) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!p.isExpectedStartArrayToken()) {
+            throw invalid(p, "items must be an array");
+        }
+        List<ItemDTO> items = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (items.size() == maxItems) {
+                throw invalid(p, "items must not have more than " + maxItems + " entries");
+            }
+            items.add(item(p, items.size()));
+            checkSize(p, start);
+        }
+        return items;
+    }
+
+    private ItemDTO item(JsonParser p, int index) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            throw invalid(p, "items[" + index + "] must be an object");
+        }
+        ItemDTO item = new ItemDTO();
+        for (String field = p.nextFieldName(); field != null; field = p.nextFieldName()) {
+            p.nextToken();
+            switch (field) {
+                case "name" -> item.name = token(p, field);
+                case "price" -> item.price = number(p, field);
+                case "quantity" -> item.quantity = whole(p, field);
+                case "discount" -> item.discount = number(p, field);
+                case "discountType" -> item.discountType = token(p, field);
+                default -> p.skipChildren();
+            }
+        }
+        return item;
+    }
+
+    /* ==================== VALUES ==================== */
+
+    /** Free text, kept as its own String. */
+    private String text(JsonParser p, String field) throws IOException {
+        if (!scalar(p, field)) {
+            return null;
+        }
+        return p.getText();
+    }
+
+    /** A value that repeats across invoices, taken from the intern table when short enough. */
+    private String token(JsonParser p, String field) throws IOException {
+        if (!scalar(p, field)) {
+            return null;
+        }
+        if (p.currentToken() != JsonToken.VALUE_STRING || p.getTextLength() > MAX_INTERNED_CHARS) {
+            return p.getText();
+        }
+        return interner.intern(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+    }
+
+    /** False for null; otherwise checks the value is a scalar within the length limit. */
+    private boolean scalar(JsonParser p, String field) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        if (!token.isScalarValue()) {
+            throw invalid(p, field + " must be a string");
+        }
+        if (p.getTextLength() > maxStringChars) {
+            throw invalid(p, field + " must not be longer than " + maxStringChars + " characters");
+        }
+        return true;
+    }
+
+    /** A finite number, also accepted as a numeric string; null and "" are 0. */
+    private static double number(JsonParser p, String field) throws IOException {
+        double value;
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> value = p.getDoubleValue();
+            case VALUE_NULL -> value = 0;
+            case VALUE_STRING -> {
+                String text = p.getText().strip();
+                try {
+                    value = text.isEmpty() ? 0 : Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw invalid(p, field + " must be a number");
+                }
+            }
+            default -> throw invalid(p, field + " must be a number");
+        }
+        if (!Double.isFinite(value)) {
+            throw invalid(p, field + " must be a number");
+        }
+        return value;
+    }
+
+    private static int whole(JsonParser p, String field) throws IOException {
+        double value = number(p, field);
+        if (value != Math.rint(value) || Math.abs(value) > Integer.MAX_VALUE) {
+            throw invalid(p, field + " must be a whole number");
+        }
+        return (int) value;
+    }
+
+    /** A boolean, also accepted as "true" / "false"; null leaves the default. */
+    private static boolean flag(JsonParser p, String field, boolean absent) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_NULL:
+                return absent;
+            case VALUE_STRING:
+                if ("true".equalsIgnoreCase(p.getText().strip())) {
+                    return true;
+                }
+                if ("false".equalsIgnoreCase(p.getText().strip())) {
+                    return false;
+                }
+                throw invalid(p, field + " must be true or false");
+            default:
+                throw invalid(p, field + " must be true or false");
+        }
+    }
+
+    /* ==================== LIMITS ==================== */
+
+    private void checkSize(JsonParser p, long start) throws IOException {
+        if (start >= 0 && offset(p.currentLocation()) - start > maxBytes) {
+            throw invalid(p, "invoice must not be larger than " + maxBytes + " bytes");
+        }
+    }
+
+    /** Bytes read so far, or characters for a parser over text; -1 when neither is known. */
+    private static long offset(JsonLocation location) {
+        long bytes = location.getByteOffset();
+        return bytes >= 0 ? bytes : location.getCharOffset();
+    }
+
+    private static JsonMappingException invalid(JsonParser p, String message) {
+        return JsonMappingException.from(p, message);
+    }
+}
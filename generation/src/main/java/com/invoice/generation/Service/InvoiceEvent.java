@@ -0,0 +1,24 @@
+package com.invoice.generation.Service;
+
+import java.util.List;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+/**
+ * An issued invoice as handed to the {@link InvoiceSink}s. The sheet it is
+ * routed to and its log row are worked out once here, so every sink agrees
+ * on them.
+ *
+ * @param sheet {@code null} when the invoice is not logged to any sheet
+ * @param row {@code null} when {@code sheet} is
+ */
+public record InvoiceEvent(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date,
+        LogSheet sheet, List<Object> row) {
+
+    public static InvoiceEvent of(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        LogSheet sheet = LogSheet.route(invoice);
+        return new InvoiceEvent(invoice, totals, date, sheet,
+                sheet == null ? null : sheet.row(invoice, totals, date));
+    }
+}
@@ -0,0 +1,114 @@
+package com.invoice.generation.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceJobDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+/**
+ * State of one invoice travelling through {@link InvoiceJobService}. Once
+ * rendered it waits on the email stage, which completes it unless it has
+ * failed. The sinks are fire-and-forget and do not affect the status.
+ * Readers take a snapshot through {@link #toDTO()}.
+ */
+public class InvoiceJob {
+
+    public enum Status {
+        QUEUED, RENDERING, DELIVERING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final InvoiceDTO invoice;
+    private final InvoiceTotalsDTO totals;
+    private final String date;
+    private final long submittedAt = System.currentTimeMillis();
+
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Long completedAt;
+
+    RenderedPdf pdf;
+
+    InvoiceJob(String id, InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        this.id = id;
+        this.invoice = invoice;
+        this.totals = totals;
+        this.date = date;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public InvoiceDTO getInvoice() {
+        return invoice;
+    }
+
+    public InvoiceTotalsDTO getTotals() {
+        return totals;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void start(Status stage) {
+        this.status = stage;
+    }
+
+    synchronized void recordStage(String stage, long startNanos) {
+        stageMillis.put(stage, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Called by the email stage once it is done, successfully or not;
+     * completes the job unless it has failed.
+     */
+    synchronized void delivered() {
+        releasePdf();
+        if (status == Status.FAILED) {
+            return;
+        }
+        this.completedAt = System.currentTimeMillis();
+        this.status = Status.COMPLETED;
+    }
+
+    /** Deletes the PDF's temp file, if it has one, and drops it. */
+    synchronized void releasePdf() {
+        if (pdf != null) {
+            pdf.close();
+            pdf = null;
+        }
+    }
+
+    /** Leaves the PDF alone, the email stage may still be reading it. */
+    synchronized void fail(Throwable cause) {
+        this.error = cause.getMessage();
+        this.completedAt = System.currentTimeMillis();
+        this.status = Status.FAILED;
+    }
+
+    public synchronized InvoiceJobDTO toDTO() {
+        InvoiceJobDTO dto = new InvoiceJobDTO();
+        dto.jobId = id;
+        dto.status = status.name();
+        dto.error = error;
+        dto.amount = totals.payableRupees();
+        dto.submittedAt = submittedAt;
+        dto.completedAt = completedAt;
+        dto.stageMillis = new LinkedHashMap<>(stageMillis);
+        return dto;
+    }
+}
@@ -0,0 +1,184 @@
+package com.invoice.generation.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.invoice.generation.Config.InvoiceThreads;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs POST /invoice/generate?async=true requests off the request thread as
+ * a staged pipeline: render, store and hand to the {@link InvoiceSinks},
+ * then email. Every stage has its own bounded pool and queue. A full
+ * render queue rejects new jobs straight away; a full email queue makes
+ * the render stage wait, so
+ * a slow email relay throttles rendering instead of piling PDFs up in
+ * memory. The stage threads are virtual when {@link InvoiceThreads} says so.
+ */
+@Service
+public class InvoiceJobService {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(InvoiceJobService.class);
+
+    private final PdfService pdfService;
+    private final GenericEmailService mail;
+    private final InvoiceSinks invoiceSinks;
+    private final InvoiceStore invoiceStore;
+    private final InvoiceStats invoiceStats;
+
+    private final ThreadPoolExecutor renderStage;
+    private final ThreadPoolExecutor emailStage;
+
+    private final Map<String, InvoiceJob> jobs = new ConcurrentHashMap<>();
+    private final int maxRetainedJobs;
+
+    public InvoiceJobService(
+            PdfService pdfService,
+            GenericEmailService mail,
+            InvoiceSinks invoiceSinks,
+            InvoiceStore invoiceStore,
+            InvoiceStats invoiceStats,
+            InvoiceThreads threads,
+            @Value("${invoice.pipeline.render.threads:2}") int renderThreads,
+            @Value("${invoice.pipeline.render.queue:50}") int renderQueue,
+            @Value("${invoice.pipeline.email.threads:4}") int emailThreads,
+            @Value("${invoice.pipeline.email.queue:100}") int emailQueue,
+            @Value("${invoice.pipeline.retained-jobs:1000}") int maxRetainedJobs
+    ) {
+        this.pdfService = pdfService;
+        this.mail = mail;
+        this.invoiceSinks = invoiceSinks;
+        this.invoiceStore = invoiceStore;
+        this.invoiceStats = invoiceStats;
+        this.maxRetainedJobs = maxRetainedJobs;
+
+        this.renderStage = stage(threads.factory("invoice-render-"), renderThreads, renderQueue,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.emailStage = stage(threads.factory("invoice-email-"), emailThreads, emailQueue, WAIT_FOR_SPACE);
+    }
+
+    /**
+     * Queues an already priced invoice for rendering.
+     *
+     * @throws RejectedExecutionException when the render queue is full
+     */
+    public InvoiceJob submit(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        InvoiceJob job = new InvoiceJob(UUID.randomUUID().toString(), invoice, totals, date);
+        jobs.put(job.getId(), job);
+        try {
+            renderStage.execute(() -> render(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        evictFinishedJobs();
+        return job;
+    }
+
+    public InvoiceJob find(String id) {
+        return jobs.get(id);
+    }
+
+    private void render(InvoiceJob job) {
+        long start = System.nanoTime();
+        try {
+            job.start(InvoiceJob.Status.RENDERING);
+            String printed = PdfService.printedDate(job.getInvoice());
+            job.pdf = pdfService.issuePdf(job.getInvoice(), job.getTotals(), printed,
+                    AdmissionControl.Lane.BACKGROUND);
+            InvoiceStore.Issued issued = new InvoiceStore.Issued(job.getInvoice(), job.getTotals(), printed,
+                    pdfService.pdfRef(job.getInvoice(), job.getTotals(), printed));
+            invoiceStore.save(issued);
+            invoiceStats.record(issued);
+            invoiceSinks.publish(InvoiceEvent.of(job.getInvoice(), job.getTotals(), job.getDate()));
+            job.recordStage("render", start);
+            job.start(InvoiceJob.Status.DELIVERING);
+            emailStage.execute(() -> email(job));
+        } catch (Exception e) {
+            // the email stage never got it
+            job.releasePdf();
+            fail(job, "render", e);
+        }
+    }
+
+    private void email(InvoiceJob job) {
+        long start = System.nanoTime();
+        try {
+            InvoiceDTO invoice = job.getInvoice();
+            mail.sendEmail(invoice, job.getDate(), job.pdf, PdfService.fileName(invoice))
+                    .join();  // this stage's pool size is the job pipeline's email concurrency
+            job.recordStage("email", start);
+        } catch (Exception e) {
+            fail(job, "email", e);
+        } finally {
+            job.delivered();
+        }
+    }
+
+    private void fail(InvoiceJob job, String stage, Exception e) {
+        log.error("Invoice job {} failed in {} stage", job.getId(), stage, e);
+        job.fail(e);
+    }
+
+    private void evictFinishedJobs() {
+        if (jobs.size() <= maxRetainedJobs) {
+            return;
+        }
+        Iterator<InvoiceJob> it = jobs.values().iterator();
+        while (jobs.size() > maxRetainedJobs && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // drain in pipeline order so in-flight jobs can still reach the later stages
+        for (ThreadPoolExecutor stage : new ThreadPoolExecutor[]{renderStage, emailStage}) {
+            stage.shutdown();
+            stage.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /* ========== STAGE POOLS ========== */
+    private static final RejectedExecutionHandler WAIT_FOR_SPACE = (task, executor) -> {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Pipeline is shutting down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+        }
+    };
+
+    private static ThreadPoolExecutor stage(ThreadFactory threadFactory, int threads, int capacity,
+            RejectedExecutionHandler whenFull) {
+        return new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                threadFactory,
+                whenFull
+        );
+    }
+}
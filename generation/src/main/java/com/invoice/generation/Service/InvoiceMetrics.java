@@ -0,0 +1,97 @@
+package com.invoice.generation.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Service;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Per-invoice meters, tagged by {@code invoiceStatus} and {@code issuedBy}.
+ * Both come straight from the request, so the number of distinct values is
+ * capped; anything past the cap is reported as {@code other}.
+ */
+@Service
+public class InvoiceMetrics {
+
+    static final int MAX_TAG_VALUES = 32;
+    private static final int MAX_TAG_LENGTH = 40;
+
+    private final MeterRegistry registry;
+    private final Set<String> statuses = ConcurrentHashMap.newKeySet();
+    private final Set<String> issuers = ConcurrentHashMap.newKeySet();
+
+    public InvoiceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String name, InvoiceDTO invoice) {
+        sample.stop(timer(name, tags(invoice)));
+    }
+
+    public void stop(Timer.Sample sample, String name, InvoiceDTO invoice, String outcome) {
+        sample.stop(timer(name, tags(invoice).and("outcome", outcome)));
+    }
+
+    public <T> T time(String name, InvoiceDTO invoice, Supplier<T> work) {
+        Timer.Sample sample = start();
+        try {
+            return work.get();
+        } finally {
+            stop(sample, name, invoice);
+        }
+    }
+
+    public void pdfSize(InvoiceDTO invoice, long bytes) {
+        DistributionSummary.builder("invoice.pdf.size")
+                .description("Size of a rendered invoice PDF")
+                .baseUnit("bytes")
+                .tags(tags(invoice))
+                .register(registry)
+                .record(bytes);
+    }
+
+    public void sheetRows(InvoiceDTO invoice, String sheetName, int rows) {
+        registry.counter("invoice.sheets.rows", tags(invoice).and("sheet", sheetName))
+                .increment(rows);
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags).register(registry);
+    }
+
+    Tags tags(InvoiceDTO invoice) {
+        return Tags.of(
+                "invoiceStatus", bounded(statuses, invoice == null ? null : invoice.invoiceStatus),
+                "issuedBy", bounded(issuers, invoice == null ? null : invoice.issuedBy));
+    }
+
+    private static String bounded(Set<String> seen, String value) {
+        if (value == null || value.isBlank()) {
+            return "none";
+        }
+        String v = value.strip();
+        if (v.length() > MAX_TAG_LENGTH) {
+            v = v.substring(0, MAX_TAG_LENGTH);
+        }
+        if (seen.contains(v)) {
+            return v;
+        }
+        if (seen.size() >= MAX_TAG_VALUES) {
+            return "other";
+        }
+        seen.add(v);
+        return v;
+    }
+}
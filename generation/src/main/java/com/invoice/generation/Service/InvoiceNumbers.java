@@ -0,0 +1,138 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out invoice numbers. Within this JVM a number costs one atomic
+ * increment. Every {@code invoice.numbers.block-size} numbers a new block is
+ * reserved from the sequence file ({@code invoice.numbers.file}) under an
+ * exclusive file lock, so instances sharing that file never hand out the
+ * same number and never coordinate per invoice.
+ * <p>
+ * Numbers increase within an instance, but instances interleave, and
+ * whatever is left of a block when an instance stops is skipped, so the
+ * sequence has gaps.
+ */
+@Service
+public class InvoiceNumbers {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceNumbers.class);
+
+    // fixed width, so the file is rewritten in place and never seen half-written or empty
+    private static final String FILE_FORMAT = "%019d\n";
+
+    // FileLock is held per JVM, so instances in one JVM (tests, benchmarks) also take turns here
+    private static final Object RESERVING = new Object();
+
+    /** Numbers from {@code next} up to, not including, {@code limit}. */
+    private static final class Block {
+
+        final AtomicLong next;
+        final long limit;
+
+        Block(long first, long limit) {
+            this.next = new AtomicLong(first);
+            this.limit = limit;
+        }
+    }
+
+    private final Path file;
+    private final int blockSize;
+    private final String prefix;
+    private final Counter blocks;
+
+    private volatile Block block = new Block(0, 0);
+
+    public InvoiceNumbers(
+            MeterRegistry registry,
+            @Value("${invoice.numbers.file:data/invoice-number.seq}") String file,
+            @Value("${invoice.numbers.block-size:100}") int blockSize,
+            @Value("${invoice.numbers.prefix:INV-}") String prefix
+    ) {
+        this.file = Path.of(file);
+        this.blockSize = Math.max(1, blockSize);
+        this.prefix = prefix;
+        this.blocks = Counter.builder("invoice.numbers.blocks")
+                .description("Blocks of invoice numbers reserved from the sequence file")
+                .register(registry);
+    }
+
+    /** The next number; only touches the sequence file when this instance's block runs out. */
+    public long next() {
+        while (true) {
+            Block current = block;
+            long number = current.next.getAndIncrement();
+            if (number < current.limit) {
+                return number;
+            }
+            refill(current);
+        }
+    }
+
+    /** The next number as it is printed, e.g. {@code INV-000123}. */
+    public String nextNumber() {
+        return format(next());
+    }
+
+    public String format(long number) {
+        return prefix + String.format("%06d", number);
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // another thread may have refilled while this one waited
+        if (block == exhausted) {
+            long first = reserve(blockSize);
+            block = new Block(first, first + blockSize);
+        }
+    }
+
+    /** Moves the file's next free number on by {@code count} and returns where it was. */
+    private long reserve(int count) {
+        synchronized (RESERVING) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    FileLock lock = channel.lock();
+                    try {
+                        ByteBuffer text = ByteBuffer.allocate(32);
+                        channel.read(text, 0);
+                        String stored = new String(text.array(), 0, text.position(), StandardCharsets.US_ASCII)
+                                .strip();
+                        long first = stored.isEmpty() ? 1 : Long.parseLong(stored);
+
+                        channel.write(ByteBuffer.wrap(String.format(FILE_FORMAT, first + count)
+                                .getBytes(StandardCharsets.US_ASCII)), 0);
+                        channel.force(false);
+                        blocks.increment();
+                        log.debug("Reserved invoice numbers {} to {}", first, first + count - 1);
+                        return first;
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Cannot reserve invoice numbers from " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.invoice.generation.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+/**
+ * Previews of an invoice for POST /invoice/preview, built from the same
+ * totals and the same {@code invoice} template as the PDF.
+ * <p>
+ * The HTML preview is the template output with the static assets (logo,
+ * signature) inlined as data URIs, so it renders in a browser on its own.
+ * Those {@code <img>} sources are encoded once per asset and reused. The
+ * PNG preview is page 1 of the real PDF at {@code invoice.preview.dpi};
+ * the PDF comes from the {@link PdfCache} when it can, and the last
+ * {@code invoice.preview.cache-entries} images are kept by PDF key.
+ */
+@Lazy
+@Service
+public class InvoicePreviewService {
+
+    private static final Pattern STATIC_SRC = Pattern.compile("src=\"(static/[^\"]+)\"");
+
+    private final PdfService pdfService;
+    private final PdfRenderResources resources;
+    private final AdmissionControl admission;
+    private final InvoiceMetrics metrics;
+    private final float dpi;
+    private final int maxImages;
+
+    // template path -> src="data:..." attribute
+    private final Map<String, String> inlined = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    public InvoicePreviewService(
+            PdfService pdfService,
+            PdfRenderResources resources,
+            AdmissionControl admission,
+            InvoiceMetrics metrics,
+            @Value("${invoice.preview.dpi:60}") float dpi,
+            @Value("${invoice.preview.cache-entries:128}") int maxImages
+    ) {
+        this.pdfService = pdfService;
+        this.resources = resources;
+        this.admission = admission;
+        this.metrics = metrics;
+        this.dpi = dpi;
+        this.maxImages = maxImages;
+    }
+
+    public String html(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        return metrics.time("invoice.preview.html", invoice, () -> {
+            String html = pdfService.renderHtml(invoice, totals);
+            Matcher src = STATIC_SRC.matcher(html);
+            return src.replaceAll(m -> Matcher.quoteReplacement(
+                    inlined.computeIfAbsent(m.group(1), this::dataUri)));
+        });
+    }
+
+    private String dataUri(String path) {
+        String type = URLConnection.guessContentTypeFromName(path);
+        return "src=\"data:" + (type == null ? "application/octet-stream" : type) + ";base64,"
+                + Base64.getEncoder().encodeToString(resources.asset(path)) + "\"";
+    }
+
+    /** Page 1 of the invoice's PDF as a PNG. */
+    public byte[] png(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        return metrics.time("invoice.preview.png", invoice, () -> {
+            String key = pdfService.pdfRef(invoice, totals);
+            synchronized (images) {
+                byte[] png = images.get(key);
+                if (png != null) {
+                    return png;
+                }
+            }
+
+            byte[] png;
+            try (RenderedPdf pdf = pdfService.generatePdf(invoice, totals)) {
+                png = admission.render(() -> rasterize(pdf));
+            }
+
+            synchronized (images) {
+                images.put(key, png);
+                if (images.size() > maxImages) {
+                    images.remove(images.keySet().iterator().next());
+                }
+            }
+            return png;
+        });
+    }
+
+    private byte[] rasterize(RenderedPdf pdf) {
+        // a large invoice's pages are read through a scratch file, as they were written
+        MemoryUsageSetting memory = pdf.inMemory()
+                ? MemoryUsageSetting.setupMainMemoryOnly()
+                : MemoryUsageSetting.setupTempFileOnly();
+        try (InputStream in = pdf.open(); PDDocument doc = PDDocument.load(in, memory)) {
+            BufferedImage page = new PDFRenderer(doc).renderImageWithDPI(0, dpi, ImageType.RGB);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            ImageIO.write(page, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rasterize invoice preview", e);
+        }
+    }
+}
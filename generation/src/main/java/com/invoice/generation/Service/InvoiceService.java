@@ -1,55 +1,99 @@
 package com.invoice.generation.Service;
 
+import java.util.List;
+
 import org.springframework.stereotype.Service;
 
 import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
 import com.invoice.generation.DTOs.ItemDTO;
 
 @Service
 public class InvoiceService {
 
-    private double applyDiscount(double amount, double discount, String type) {
-        if ("PERCENT".equals(type)) {
-            return amount - (amount * discount / 100);
+    private final InvoiceMetrics metrics;
+
+    public InvoiceService(InvoiceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Rejects invoices that would otherwise fail halfway through rendering
+     * or logging.
+     *
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    public void validate(InvoiceDTO invoice) {
+        if (invoice == null) {
+            throw new IllegalArgumentException("invoice is required");
+        }
+        if (invoice.items == null || invoice.items.isEmpty()) {
+            throw new IllegalArgumentException("items must not be empty");
+        }
+        if (invoice.invoiceStatus == null || invoice.invoiceStatus.isBlank()) {
+            throw new IllegalArgumentException("invoiceStatus is required");
         }
-        return amount - discount;
     }
 
-    public double calculatePayable(InvoiceDTO invoice) {
+    /**
+     * Prices the invoice in one pass over its items: line totals, item
+     * discounts, subtotal, overall discount, adjustment and the payable
+     * amount. Works in paise, so totals are exact; amounts are rounded to
+     * the paisa once on the way in, percentage discounts half-up.
+     */
+    public InvoiceTotalsDTO price(InvoiceDTO invoice) {
+        return metrics.time("invoice.payable.calculate", invoice, () -> compute(invoice));
+    }
 
-        double total = 0;
+    private static InvoiceTotalsDTO compute(InvoiceDTO invoice) {
+        List<ItemDTO> items = invoice.items;
+        InvoiceTotalsDTO totals = new InvoiceTotalsDTO(items.size());
 
-        for (ItemDTO item : invoice.items) {
+        long subtotal = 0;
+        for (int i = 0; i < items.size(); i++) {
+            ItemDTO item = items.get(i);
 
             // unit price × quantity
-            double itemTotal = item.price * item.quantity;
+            long unitPrice = paise(item.price);
+            long lineTotal = unitPrice * item.quantity;
 
-            // apply item-level discount
-            double discountedItemTotal = applyDiscount(
-                    itemTotal,
-                    item.discount,
-                    item.discountType
-            );
+            // item-level discount
+            long lineNet = lineTotal - discount(lineTotal, item.discount, item.discountType);
 
-            total += discountedItemTotal;
+            totals.unitPrice[i] = unitPrice;
+            totals.lineTotal[i] = lineTotal;
+            totals.lineNet[i] = lineNet;
+            subtotal += lineNet;
         }
+        totals.subtotal = subtotal;
 
-        // apply overall discount (backend)
+        long total = subtotal;
+
+        // overall discount (backend)
         if (invoice.applyOverallDiscount) {
-            total = applyDiscount(
-                    total,
-                    invoice.overallDiscount,
-                    invoice.overallDiscountType
-            );
+            totals.overallDiscount = discount(total, invoice.overallDiscount, invoice.overallDiscountType);
+            total -= totals.overallDiscount;
         }
 
-        // apply adjusment discount
-        total = applyDiscount(
-                total,
-                invoice.adjustmentAmount,
-                invoice.adjustmentAmountType
-        );
+        // adjustment
+        totals.adjustment = discount(total, invoice.adjustmentAmount, invoice.adjustmentAmountType);
+        total -= totals.adjustment;
+
+        totals.payable = total;
+        return totals;
+    }
+
+    /** What a PERCENT or flat discount takes off {@code amount}, in paise. */
+    private static long discount(long amount, double discount, String type) {
+        if ("PERCENT".equals(type)) {
+            // hundredths of a percent, so 12.5% stays exact
+            long basisPoints = Math.round(discount * 100);
+            return Math.floorDiv(amount * basisPoints + 5_000, 10_000);
+        }
+        return paise(discount);
+    }
 
-        return total;
+    private static long paise(double rupees) {
+        return Math.round(rupees * 100);
     }
 }
@@ -0,0 +1,29 @@
+package com.invoice.generation.Service;
+
+import java.util.List;
+
+/**
+ * A downstream destination for issued invoices: the Google Sheets logs, a
+ * local CSV log, a webhook. Every {@code @Service} implementing this is
+ * picked up by {@link InvoiceSinks}, which feeds each one from its own
+ * queue and thread, so a slow or failing sink holds up nobody else.
+ */
+public interface InvoiceSink {
+
+    /** Short name, used for the sink's thread and metric tags. */
+    String name();
+
+    /** Whether the sink is configured; disabled sinks get no queue. */
+    default boolean enabled() {
+        return true;
+    }
+
+    void accept(InvoiceEvent event) throws Exception;
+
+    /** A whole batch at once; sinks that can write it in one go override this. */
+    default void acceptAll(List<InvoiceEvent> events) throws Exception {
+        for (InvoiceEvent event : events) {
+            accept(event);
+        }
+    }
+}
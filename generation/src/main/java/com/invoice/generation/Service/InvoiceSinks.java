@@ -0,0 +1,137 @@
+package com.invoice.generation.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.invoice.generation.Config.InvoiceThreads;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Fans issued invoices out to every enabled {@link InvoiceSink}. Each sink
+ * has one thread and a queue of {@code invoice.sinks.queue} invoices, so
+ * sinks run side by side and fail on their own. Publishing never waits: a
+ * sink whose queue is full loses the invoice (counted in
+ * {@code invoice.sinks.dropped}) rather than slowing the response down.
+ */
+@Service
+public class InvoiceSinks {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(InvoiceSinks.class);
+
+    private final class Lane {
+
+        final InvoiceSink sink;
+        final ThreadPoolExecutor executor;
+        final Counter dropped;
+
+        Lane(InvoiceSink sink, int queue) {
+            this.sink = sink;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queue), threads.factory("invoice-sink-" + sink.name() + "-"));
+            this.dropped = Counter.builder("invoice.sinks.dropped")
+                    .description("Invoices a sink never saw because its queue was full")
+                    .tag("sink", sink.name())
+                    .register(registry);
+            Gauge.builder("invoice.sinks.queued", executor, e -> e.getQueue().size())
+                    .description("Invoices waiting for a sink")
+                    .tag("sink", sink.name())
+                    .register(registry);
+        }
+
+        void submit(int invoices, SinkCall call) {
+            try {
+                executor.execute(() -> deliver(this, call));
+            } catch (RejectedExecutionException e) {
+                dropped.increment(invoices);
+                log.warn("Sink {} is backed up, dropping {} invoice(s)", sink.name(), invoices);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SinkCall {
+
+        void run() throws Exception;
+    }
+
+    private final InvoiceThreads threads;
+    private final MeterRegistry registry;
+    private final List<Lane> lanes = new ArrayList<>();
+
+    public InvoiceSinks(
+            List<InvoiceSink> sinks,
+            InvoiceThreads threads,
+            MeterRegistry registry,
+            @Value("${invoice.sinks.queue:1000}") int queue
+    ) {
+        this.threads = threads;
+        this.registry = registry;
+        for (InvoiceSink sink : sinks) {
+            if (sink.enabled()) {
+                lanes.add(new Lane(sink, queue));
+            }
+        }
+        log.info("Invoice sinks: {}", lanes.stream().map(l -> l.sink.name()).toList());
+    }
+
+    /** Queues the invoice for every sink and returns straight away. */
+    public void publish(InvoiceEvent event) {
+        for (Lane lane : lanes) {
+            lane.submit(1, () -> lane.sink.accept(event));
+        }
+    }
+
+    /** Queues a whole batch as one unit per sink. */
+    public void publishAll(List<InvoiceEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<InvoiceEvent> batch = List.copyOf(events);
+        for (Lane lane : lanes) {
+            lane.submit(batch.size(), () -> lane.sink.acceptAll(batch));
+        }
+    }
+
+    private void deliver(Lane lane, SinkCall call) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            call.run();
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("Sink {} failed", lane.sink.name(), e);
+        } finally {
+            Timer.builder("invoice.sinks.deliver")
+                    .description("Time a sink took to take an invoice")
+                    .tag("sink", lane.sink.name())
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            lane.executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceStatsDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Running sales figures: invoice count, payable total and discounts given,
+ * overall and per issue day, status, payment method and issuer. Every stored
+ * invoice adds to them as it is issued, so {@code GET /invoice/stats} reads a
+ * handful of counters instead of the sheets or the store.
+ * <p>
+ * The figures are written to {@code invoice.stats.file} every
+ * {@code invoice.stats.snapshot-interval} and on shutdown, and read back on
+ * startup; invoices issued after the last snapshot of a crashed instance are
+ * not counted. Each counter is exact, but a read taken while invoices are
+ * being recorded may see one counter of an invoice and not yet another.
+ */
+@Service
+public class InvoiceStats {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(InvoiceStats.class);
+
+    // values beyond invoice.stats.max-keys in one dimension are counted together under this key
+    static final String OTHER = "(other)";
+    static final String NONE = "(none)";
+
+    /** Counters for one key; all amounts in paise. */
+    private static final class Bucket {
+
+        final LongAdder invoices = new LongAdder();
+        final LongAdder payable = new LongAdder();
+        final LongAdder discount = new LongAdder();
+
+        void add(long payablePaise, long discountPaise) {
+            invoices.increment();
+            payable.add(payablePaise);
+            discount.add(discountPaise);
+        }
+
+        InvoiceStatsDTO.Totals toDTO() {
+            InvoiceStatsDTO.Totals totals = new InvoiceStatsDTO.Totals();
+            totals.invoices = invoices.sum();
+            totals.amount = payable.sum() / 100.0;
+            totals.discount = discount.sum() / 100.0;
+            return totals;
+        }
+
+        Counts toCounts() {
+            return new Counts(invoices.sum(), payable.sum(), discount.sum());
+        }
+
+        static Bucket of(Counts counts) {
+            Bucket bucket = new Bucket();
+            bucket.invoices.add(counts.invoices());
+            bucket.payable.add(counts.payablePaise());
+            bucket.discount.add(counts.discountPaise());
+            return bucket;
+        }
+    }
+
+    /** One bucket as it is written to the snapshot file. */
+    private record Counts(long invoices, long payablePaise, long discountPaise) {
+
+    }
+
+    private record Snapshot(long since, Counts all, Map<String, Counts> byDay, Map<String, Counts> byStatus,
+            Map<String, Counts> byPaymentMethod, Map<String, Counts> byIssuedBy) {
+
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final int maxKeys;
+    private final int retainedDays;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final long since;
+    private final Bucket all;
+    private final Map<String, Bucket> byDay;
+    private final Map<String, Bucket> byStatus;
+    private final Map<String, Bucket> byPaymentMethod;
+    private final Map<String, Bucket> byIssuedBy;
+
+    private final ScheduledExecutorService snapshotter;
+
+    public InvoiceStats(
+            ObjectMapper objectMapper,
+            @Value("${invoice.stats.file:data/invoice-stats.json}") String file,
+            @Value("${invoice.stats.snapshot-interval:1m}") Duration snapshotInterval,
+            @Value("${invoice.stats.max-keys:1000}") int maxKeys,
+            @Value("${invoice.stats.retained-days:400}") int retainedDays
+    ) {
+        this.objectMapper = objectMapper;
+        this.file = Path.of(file);
+        this.maxKeys = maxKeys;
+        this.retainedDays = retainedDays;
+
+        Snapshot snapshot = load();
+        this.since = snapshot == null ? System.currentTimeMillis() : snapshot.since();
+        this.all = snapshot == null ? new Bucket() : Bucket.of(snapshot.all());
+        this.byDay = buckets(snapshot == null ? null : snapshot.byDay());
+        this.byStatus = buckets(snapshot == null ? null : snapshot.byStatus());
+        this.byPaymentMethod = buckets(snapshot == null ? null : snapshot.byPaymentMethod());
+        this.byIssuedBy = buckets(snapshot == null ? null : snapshot.byIssuedBy());
+
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "invoice-stats-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMs = snapshotInterval.toMillis();
+        this.snapshotter.scheduleWithFixedDelay(this::snapshot, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Adds a stored invoice to the figures. */
+    public void record(InvoiceStore.Issued issued) {
+        InvoiceDTO invoice = issued.invoice();
+        InvoiceTotalsDTO totals = issued.totals();
+        long payable = totals.payable;
+        long discount = discount(totals);
+
+        all.add(payable, discount);
+        String day = LocalDate.ofInstant(Instant.ofEpochMilli(issued.issuedAt()), zone).toString();
+        bucket(byDay, day).add(payable, discount);
+        bucket(byStatus, invoice.invoiceStatus).add(payable, discount);
+        bucket(byPaymentMethod, invoice.paymentMethod).add(payable, discount);
+        bucket(byIssuedBy, invoice.issuedBy).add(payable, discount);
+    }
+
+    /** The current figures; costs one read per key, however many invoices were counted. */
+    public InvoiceStatsDTO read() {
+        InvoiceStatsDTO stats = new InvoiceStatsDTO();
+        stats.asOf = System.currentTimeMillis();
+        stats.since = since;
+        stats.all = all.toDTO();
+        stats.byDay = totals(byDay);
+        stats.byStatus = totals(byStatus);
+        stats.byPaymentMethod = totals(byPaymentMethod);
+        stats.byIssuedBy = totals(byIssuedBy);
+        return stats;
+    }
+
+    /** Writes the figures to the snapshot file, replacing the previous one in a single rename. */
+    public void snapshot() {
+        try {
+            pruneDays();
+            Snapshot snapshot = new Snapshot(since, all.toCounts(), counts(byDay), counts(byStatus),
+                    counts(byPaymentMethod), counts(byIssuedBy));
+
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                objectMapper.writeValue(tmp.toFile(), snapshot);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write invoice stats to {}", file, e);
+        }
+    }
+
+    private Snapshot load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), Snapshot.class);
+        } catch (IOException e) {
+            // a snapshot that cannot be read is set aside rather than overwritten
+            log.warn("Ignoring unreadable invoice stats in {}", file, e);
+            try {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveFailed) {
+                log.warn("Could not set aside {}", file, moveFailed);
+            }
+            return null;
+        }
+    }
+
+    private Bucket bucket(Map<String, Bucket> dimension, String key) {
+        String name = key == null || key.isBlank() ? NONE : key.strip();
+        Bucket bucket = dimension.get(name);
+        if (bucket != null) {
+            return bucket;
+        }
+        // free-text fields must not grow a dimension without bound
+        if (dimension.size() >= maxKeys) {
+            name = OTHER;
+        }
+        return dimension.computeIfAbsent(name, k -> new Bucket());
+    }
+
+    private void pruneDays() {
+        String oldest = LocalDate.now(zone).minusDays(retainedDays).toString();
+        // ISO dates sort as strings
+        byDay.keySet().removeIf(day -> day.compareTo(oldest) < 0);
+    }
+
+    /** Item discounts (line total less line net) plus the overall discount. */
+    private static long discount(InvoiceTotalsDTO totals) {
+        long discount = totals.overallDiscount;
+        for (int i = 0; i < totals.lineTotal.length; i++) {
+            discount += totals.lineTotal[i] - totals.lineNet[i];
+        }
+        return discount;
+    }
+
+    private static Map<String, Bucket> buckets(Map<String, Counts> stored) {
+        Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+        if (stored != null) {
+            stored.forEach((key, counts) -> buckets.put(key, Bucket.of(counts)));
+        }
+        return buckets;
+    }
+
+    private static Map<String, InvoiceStatsDTO.Totals> totals(Map<String, Bucket> dimension) {
+        Map<String, InvoiceStatsDTO.Totals> totals = new TreeMap<>();
+        dimension.forEach((key, bucket) -> totals.put(key, bucket.toDTO()));
+        return totals;
+    }
+
+    private static Map<String, Counts> counts(Map<String, Bucket> dimension) {
+        Map<String, Counts> counts = new TreeMap<>();
+        dimension.forEach((key, bucket) -> counts.put(key, bucket.toCounts()));
+        return counts;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        snapshot();
+    }
+}
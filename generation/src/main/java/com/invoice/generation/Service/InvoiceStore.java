@@ -0,0 +1,257 @@
+package com.invoice.generation.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceRecordDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The local record of every issued invoice, in an embedded file-backed H2
+ * database (see {@code schema.sql}). Each row keeps the computed amounts, the
+ * key of the rendered PDF and the full invoice as JSON, and is indexed by
+ * phone, email, status and date so lookups do not have to scan the Google
+ * Sheet, which is now only a downstream copy fed by {@link SheetsLogWriter}.
+ */
+@Service
+public class InvoiceStore {
+
+    private static final DateTimeFormatter INVOICE_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    private static final int MAX_RESULTS = 500;
+
+    // Indian mobile numbers; anything in front of them is a country or trunk prefix
+    private static final int NATIONAL_DIGITS = 10;
+
+    private static final String INSERT = """
+            INSERT INTO invoice (issued_at, invoice_date, customer_name, customer_phone, customer_email,
+                                 status, issued_by, item_count, subtotal_paise, overall_discount_paise,
+                                 adjustment_paise, payable_paise, pdf_ref, invoice_json, invoice_number,
+                                 printed_date)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SUMMARY_COLUMNS = """
+            id, invoice_number, issued_at, invoice_date, customer_name, customer_phone, customer_email, status,
+            issued_by, item_count, subtotal_paise, overall_discount_paise, adjustment_paise,
+            payable_paise, pdf_ref, printed_date
+            """;
+
+    /** One invoice to be stored; {@code printedDate} is the date its PDF was rendered with. */
+    public record Issued(InvoiceDTO invoice, InvoiceTotalsDTO totals, String printedDate, String pdfRef,
+            long issuedAt) {
+
+        public Issued(InvoiceDTO invoice, InvoiceTotalsDTO totals, String printedDate, String pdfRef) {
+            this(invoice, totals, printedDate, pdfRef, System.currentTimeMillis());
+        }
+    }
+
+    /** Filters for {@link #find}; null fields do not filter. {@code to} is inclusive. */
+    public record Query(String phone, String email, String status, LocalDate from, LocalDate to,
+            Long beforeId, int limit) {
+
+    }
+
+    /**
+     * Reads stored invoice JSON with plain field binding rather than the
+     * request-facing InvoiceDeserializer: a stored invoice keeps the number
+     * it was issued with, and stays readable if the request limits are
+     * lowered later.
+     */
+    private static final ObjectReader STORED = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(InvoiceDTO.class);
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final Timer saveTimer;
+    private final Timer queryTimer;
+
+    public InvoiceStore(JdbcTemplate jdbc, ObjectMapper objectMapper, MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.saveTimer = Timer.builder("invoice.store.save")
+                .description("Writing issued invoices to the local store")
+                .register(registry);
+        this.queryTimer = Timer.builder("invoice.store.query")
+                .description("Invoice lookups against the local store")
+                .register(registry);
+    }
+
+    /** Stores one invoice and returns its id. */
+    public long save(Issued issued) {
+        return saveTimer.record(() -> {
+            KeyHolder key = new GeneratedKeyHolder();
+            jdbc.update(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+                bind(ps, issued);
+                return ps;
+            }, key);
+            return key.getKey().longValue();
+        });
+    }
+
+    /** Stores a whole batch in one round of JDBC batching. */
+    public void saveAll(List<Issued> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        saveTimer.record(() -> jdbc.batchUpdate(INSERT, batch, batch.size(), this::bind));
+    }
+
+    private void bind(PreparedStatement ps, Issued issued) throws SQLException {
+        InvoiceDTO invoice = issued.invoice();
+        InvoiceTotalsDTO totals = issued.totals();
+
+        ps.setTimestamp(1, new Timestamp(issued.issuedAt()));
+        LocalDate invoiceDate = parseInvoiceDate(invoice.invoiceDate);
+        if (invoiceDate == null) {
+            ps.setNull(2, Types.DATE);
+        } else {
+            ps.setObject(2, invoiceDate);
+        }
+        ps.setString(3, invoice.customerName);
+        ps.setString(4, normalizePhone(invoice.customerPhone));
+        ps.setString(5, normalizeEmail(invoice.customerEmail));
+        ps.setString(6, invoice.invoiceStatus);
+        ps.setString(7, invoice.issuedBy);
+        ps.setInt(8, invoice.items.size());
+        ps.setLong(9, totals.subtotal);
+        ps.setLong(10, totals.overallDiscount);
+        ps.setLong(11, totals.adjustment);
+        ps.setLong(12, totals.payable);
+        ps.setString(13, issued.pdfRef());
+        try {
+            ps.setString(14, objectMapper.writeValueAsString(invoice));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invoice cannot be serialized", e);
+        }
+        ps.setString(15, invoice.invoiceNumber);
+        ps.setString(16, issued.printedDate());
+    }
+
+    /** Newest first, at most {@code query.limit()} (capped at 500) rows, without the full invoice. */
+    public List<InvoiceRecordDTO> find(Query query) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS).append(" FROM invoice WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        if (query.phone() != null) {
+            sql.append(" AND customer_phone = ?");
+            args.add(normalizePhone(query.phone()));
+        }
+        if (query.email() != null) {
+            sql.append(" AND customer_email = ?");
+            args.add(normalizeEmail(query.email()));
+        }
+        if (query.status() != null) {
+            sql.append(" AND status = ?");
+            args.add(query.status());
+        }
+        if (query.from() != null) {
+            sql.append(" AND issued_at >= ?");
+            args.add(Timestamp.valueOf(query.from().atStartOfDay()));
+        }
+        if (query.to() != null) {
+            sql.append(" AND issued_at < ?");
+            args.add(Timestamp.valueOf(query.to().plusDays(1).atStartOfDay()));
+        }
+        if (query.beforeId() != null) {
+            sql.append(" AND id < ?");
+            args.add(query.beforeId());
+        }
+        sql.append(" ORDER BY issued_at DESC, id DESC LIMIT ?");
+        args.add(Math.max(1, Math.min(query.limit(), MAX_RESULTS)));
+
+        return queryTimer.record(() -> jdbc.query(sql.toString(), SUMMARY, args.toArray()));
+    }
+
+    /** One invoice with its full content. */
+    public Optional<InvoiceRecordDTO> get(long id) {
+        return queryTimer.record(() -> jdbc.query(
+                "SELECT " + SUMMARY_COLUMNS + ", invoice_json FROM invoice WHERE id = ?",
+                (rs, row) -> {
+                    InvoiceRecordDTO record = SUMMARY.mapRow(rs, row);
+                    try {
+                        record.invoice = STORED.readValue(rs.getString("invoice_json"));
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Stored invoice " + id + " is unreadable", e);
+                    }
+                    return record;
+                },
+                id).stream().findFirst());
+    }
+
+    private static final RowMapper<InvoiceRecordDTO> SUMMARY = (ResultSet rs, int row) -> {
+        InvoiceRecordDTO record = new InvoiceRecordDTO();
+        record.id = rs.getLong("id");
+        record.invoiceNumber = rs.getString("invoice_number");
+        record.issuedAt = rs.getTimestamp("issued_at").getTime();
+        LocalDate invoiceDate = rs.getObject("invoice_date", LocalDate.class);
+        record.invoiceDate = invoiceDate == null ? null : invoiceDate.format(INVOICE_DATE);
+        record.customerName = rs.getString("customer_name");
+        record.customerPhone = rs.getString("customer_phone");
+        record.customerEmail = rs.getString("customer_email");
+        record.invoiceStatus = rs.getString("status");
+        record.issuedBy = rs.getString("issued_by");
+        record.itemCount = rs.getInt("item_count");
+        record.subtotal = rs.getLong("subtotal_paise") / 100.0;
+        record.overallDiscount = rs.getLong("overall_discount_paise") / 100.0;
+        record.adjustment = rs.getLong("adjustment_paise") / 100.0;
+        record.amount = rs.getLong("payable_paise") / 100.0;
+        record.pdfRef = rs.getString("pdf_ref");
+        record.printedDate = rs.getString("printed_date");
+        return record;
+    };
+
+    private static LocalDate parseInvoiceDate(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.strip(), INVOICE_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Digits only, and without a country code, so "+91 98765-43210" and "9876543210" match. */
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() > NATIONAL_DIGITS) {
+            digits = digits.substring(digits.length() - NATIONAL_DIGITS);
+        }
+        return digits.isEmpty() ? null : digits;
+    }
+
+    static String normalizeEmail(String email) {
+        return email == null || email.isBlank() ? null : email.strip().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,104 @@
+package com.invoice.generation.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+/**
+ * The log an issued invoice belongs in, and the row it is logged as. The
+ * names double as the Google Sheets tab names and the CSV file names.
+ */
+public enum LogSheet {
+
+    SP_LOG("A:P"),
+    QUOTATION_LOG("A:P"),
+    CP_LOG("A:P"),
+    ORDER_LOG("A:H");
+
+    private final String range;
+
+    LogSheet(String range) {
+        this.range = range;
+    }
+
+    public String range() {
+        return range;
+    }
+
+    /**
+     * Customer orders go to ORDER_LOG, staff invoices with logging switched
+     * off to CP_LOG, and logged staff invoices to SP_LOG or QUOTATION_LOG by
+     * status. Any other status (Order_Placed, for one) is not logged.
+     *
+     * @return the sheet, or {@code null} when the invoice is not logged
+     */
+    public static LogSheet route(InvoiceDTO invoice) {
+        if ("Customer".equalsIgnoreCase(invoice.issuedBy)) {
+            return ORDER_LOG;
+        }
+        if (!invoice.enableLogging) {
+            return CP_LOG;
+        }
+        if ("Placed".equalsIgnoreCase(invoice.invoiceStatus)) {
+            return SP_LOG;
+        }
+        if ("Quotation".equalsIgnoreCase(invoice.invoiceStatus)) {
+            return QUOTATION_LOG;
+        }
+        return null;
+    }
+
+    /**
+     * The row values for this sheet, in column order. The invoice number
+     * came later than the other columns, so it is the last one.
+     */
+    public List<Object> row(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+
+        String itemsSummary = invoice.items.stream()
+                .map(item
+                        -> item.name
+                + " x" + item.quantity
+                + " @ " + item.price
+                )
+                .collect(Collectors.joining("\n"));
+
+        if (this == ORDER_LOG) {
+            return List.of(
+                    date,
+                    itemsSummary,
+                    Objects.toString(invoice.invoiceStatus, ""),
+                    Objects.toString(invoice.customerName, ""),
+                    Objects.toString(invoice.customerPhone, ""),
+                    Objects.toString(invoice.customerEmail, ""),
+                    Objects.toString(invoice.customerAddress, ""),
+                    Objects.toString(invoice.issuedBy, ""),
+                    Objects.toString(invoice.ownerMessage, ""),
+                    Objects.toString(invoice.invoiceNumber, "")
+            );
+        }
+
+        return List.of(
+                date,
+                itemsSummary,
+                Objects.toString(invoice.customerName, ""),
+                Objects.toString(invoice.customerPhone, ""),
+                Objects.toString(invoice.customerEmail, ""),
+                Objects.toString(invoice.customerAddress, ""),
+                Objects.toString(invoice.invoiceStatus, ""),
+                totals.payableText(),
+                Objects.toString(invoice.ownerMessage, ""),
+                Objects.toString(invoice.paymentMethod, ""),
+                Objects.toString(invoice.paymentDetails, ""),
+                Objects.toString(invoice.issuedBy, ""),
+                Objects.toString(invoice.applyOverallDiscount, "false"),
+                Objects.toString(invoice.overallDiscount, "0"),
+                Objects.toString(invoice.overallDiscountType, ""),
+                Objects.toString(invoice.adjustmentAmount, "0"),
+                Objects.toString(invoice.adjustmentAmountType, ""),
+                Objects.toString(invoice.invoiceNumber, "")
+        );
+    }
+}
@@ -0,0 +1,356 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Rendered PDFs keyed by a SHA-256 over everything that ends up on the page:
+ * the template variables, the printed date, the template itself and the
+ * preloaded assets, invoice number included. A stored invoice rendered
+ * again or a repeated download is served from here without going near
+ * openhtmltopdf.
+ * <p>
+ * The memory tier is an LRU bounded by total bytes. The optional disk tier
+ * ({@code invoice.pdf-cache.dir}) keeps one file per key, survives restarts
+ * and is trimmed oldest-first once it outgrows its own bound. A disk hit is
+ * promoted back into memory.
+ */
+@Service
+public class PdfCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfCache.class);
+
+    private final PdfRenderResources resources;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Path dir;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    private byte[] version = new byte[0];
+
+    public PdfCache(
+            MeterRegistry registry,
+            PdfRenderResources resources,
+            @Value("${invoice.pdf-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${invoice.pdf-cache.max-entry-bytes:4194304}") long maxEntryBytes,
+            @Value("${invoice.pdf-cache.dir:}") String dir,
+            @Value("${invoice.pdf-cache.max-disk-bytes:1073741824}") long maxDiskBytes
+    ) {
+        this.resources = resources;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.dir = dir == null || dir.isBlank() ? null : Path.of(dir);
+        this.maxDiskBytes = maxDiskBytes;
+
+        this.memoryHits = lookups(registry, "memory");
+        this.diskHits = lookups(registry, "disk");
+        this.misses = lookups(registry, "miss");
+
+        Gauge.builder("invoice.pdf.cache.hit.ratio", this, PdfCache::hitRatio)
+                .description("Share of PDF lookups served without rendering")
+                .register(registry);
+        Gauge.builder("invoice.pdf.cache.size", this, PdfCache::memoryBytes)
+                .description("Bytes of rendered PDFs held in memory")
+                .baseUnit("bytes")
+                .tag("tier", "memory")
+                .register(registry);
+        Gauge.builder("invoice.pdf.cache.size", diskBytes, AtomicLong::get)
+                .description("Bytes of rendered PDFs held on disk")
+                .baseUnit("bytes")
+                .tag("tier", "disk")
+                .register(registry);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("invoice.pdf.cache.lookups")
+                .description("PDF cache lookups by where they were answered")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Fixes the render version from the template and the assets, and sizes
+     * up whatever a previous run left in the disk tier.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new ClassPathResource("templates/invoice.html").getInputStream()) {
+            digest.update(in.readAllBytes());
+        }
+        digest.update(resources.fingerprint().getBytes(StandardCharsets.UTF_8));
+        version = digest.digest();
+
+        if (dir != null) {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                diskBytes.set(files.mapToLong(PdfCache::sizeOf).sum());
+            }
+        }
+    }
+
+    public boolean enabled() {
+        return maxBytes > 0 || dir != null;
+    }
+
+    /** Canonical key of the PDF {@code invoice} renders to with these totals and printed date. */
+    public String key(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        KeyBuilder key = new KeyBuilder(version);
+        key.add(date);
+        key.add(invoice.invoiceNumber);
+        key.add(totals.payable);
+        key.add(invoice.customerName);
+        key.add(invoice.customerPhone);
+        key.add(invoice.customerAddress);
+        key.add(invoice.invoiceStatus);
+        key.add(invoice.ownerMessage);
+        key.add(invoice.paymentMethod);
+        key.add(invoice.paymentDetails);
+        key.add(invoice.issuedBy);
+        key.add(invoice.applyOverallDiscount ? 1 : 0);
+        key.add(invoice.overallDiscount);
+        key.add(invoice.overallDiscountType);
+        key.add(invoice.adjustmentAmount);
+        key.add(invoice.adjustmentAmountType);
+
+        List<ItemDTO> items = invoice.items == null ? List.of() : invoice.items;
+        key.add(items.size());
+        for (ItemDTO item : items) {
+            key.add(item.name);
+            key.add(item.price);
+            key.add(item.quantity);
+            key.add(item.discount);
+            key.add(item.discountType);
+        }
+        return key.finish();
+    }
+
+    /** Cached bytes for {@code key}, or {@code null} when it has to be rendered. */
+    public byte[] get(String key) {
+        synchronized (memory) {
+            byte[] pdf = memory.get(key);
+            if (pdf != null) {
+                memoryHits.increment();
+                return pdf;
+            }
+        }
+
+        byte[] pdf = readDisk(key);
+        if (pdf != null) {
+            diskHits.increment();
+            remember(key, pdf);
+            return pdf;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /** Stores a freshly rendered PDF. {@code pdf} must not be modified afterwards. */
+    public void put(String key, byte[] pdf) {
+        if (pdf.length == 0 || pdf.length > maxEntryBytes) {
+            return;
+        }
+        remember(key, pdf);
+        writeDisk(key, pdf);
+    }
+
+    private void remember(String key, byte[] pdf) {
+        if (pdf.length > maxBytes) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] previous = memory.put(key, pdf);
+            memoryBytes += pdf.length - (previous == null ? 0 : previous.length);
+
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /* ==================== DISK TIER ==================== */
+
+    private byte[] readDisk(String key) {
+        if (dir == null) {
+            return null;
+        }
+        Path file = dir.resolve(key + ".pdf");
+        try {
+            byte[] pdf = Files.readAllBytes(file);
+            // keeps trimming close to least-recently-used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return pdf;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Cannot read cached PDF {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, byte[] pdf) {
+        if (dir == null) {
+            return;
+        }
+        Path file = dir.resolve(key + ".pdf");
+        if (Files.exists(file)) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, pdf);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write cached PDF {}: {}", file, e.getMessage());
+            return;
+        }
+
+        if (diskBytes.addAndGet(pdf.length) > maxDiskBytes) {
+            trimDisk();
+        }
+    }
+
+    /** Drops the least recently used files until the tier is back to 90% of its bound. */
+    private synchronized void trimDisk() {
+        long target = maxDiskBytes / 10 * 9;
+        try (Stream<Path> files = Files.list(dir)) {
+            Iterator<Path> oldest = files
+                    .filter(f -> f.getFileName().toString().endsWith(".pdf"))
+                    .sorted(Comparator.comparing(PdfCache::modified))
+                    .iterator();
+            while (diskBytes.get() > target && oldest.hasNext()) {
+                Path file = oldest.next();
+                long size = sizeOf(file);
+                if (Files.deleteIfExists(file)) {
+                    diskBytes.addAndGet(-size);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot trim PDF cache in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime modified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /* ==================== METRICS ==================== */
+
+    public long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Feeds fields into the digest unambiguously: strings are length
+     * prefixed, nulls are distinct from empty strings, doubles go in by
+     * their bit pattern.
+     */
+    private static final class KeyBuilder {
+
+        private final MessageDigest digest = sha256();
+        private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES);
+
+        KeyBuilder(byte[] version) {
+            digest.update(version);
+        }
+
+        void add(String value) {
+            if (value == null) {
+                add(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            add(bytes.length);
+            digest.update(bytes);
+        }
+
+        void add(double value) {
+            add(Double.doubleToLongBits(value));
+        }
+
+        void add(long value) {
+            scratch.clear();
+            scratch.putLong(value);
+            digest.update(scratch.array());
+        }
+
+        String finish() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
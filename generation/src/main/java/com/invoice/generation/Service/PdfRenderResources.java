@@ -0,0 +1,188 @@
+package com.invoice.generation.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.extend.impl.FSDefaultCacheStore;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Everything openhtmltopdf would otherwise look up again for every invoice:
+ * the classpath base URL, the bytes behind {@code static/*} (images, CSS)
+ * and the font metrics cache. Loaded once at startup, with images already
+ * shrunk by {@link ImageAssetOptimizer} and identical files collapsed onto
+ * one URL, and handed to each {@link PdfRendererBuilder} through
+ * {@link #configure}.
+ */
+@Service
+public class PdfRenderResources implements FSStreamFactory {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(PdfRenderResources.class);
+
+    // the classpath root that holds static/, which is not necessarily the first root on the path
+    private final String baseUrl = getClass().getResource("/static/").toExternalForm()
+            .replaceFirst("static/$", "");
+
+    private final Map<String, byte[]> resources = new ConcurrentHashMap<>();
+
+    // URL of a resource -> URL of an earlier one with identical bytes
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+
+    private final FSCacheEx<String, FSCacheValue> fontMetrics = new FSDefaultCacheStore();
+
+    private final ImageAssetOptimizer images;
+
+    private String fingerprint = "";
+
+    public PdfRenderResources(@Value("${invoice.assets.dpi:288}") int dpi) {
+        this.images = new ImageAssetOptimizer(dpi);
+    }
+
+    @PostConstruct
+    public void preload() throws IOException {
+        Resource[] statics = new PathMatchingResourcePatternResolver()
+                .getResources("classpath:/static/**/*.*");
+
+        Map<String, String> byDigest = new HashMap<>();
+        long originalBytes = 0;
+        long bytes = 0;
+        for (Resource resource : statics) {
+            try (InputStream in = resource.getInputStream()) {
+                byte[] data = in.readAllBytes();
+                originalBytes += data.length;
+
+                String name = String.valueOf(resource.getFilename());
+                if (ImageAssetOptimizer.isImage(name)) {
+                    data = images.optimize(name, data);
+                }
+
+                String url = resource.getURL().toExternalForm();
+                String first = byDigest.putIfAbsent(sha256(data), url);
+                if (first != null) {
+                    aliases.put(url, first);
+                    continue;
+                }
+                resources.put(url, data);
+                bytes += data.length;
+            }
+        }
+        fingerprint = sha256(String.join(",", new TreeSet<>(byDigest.keySet()))
+                .getBytes(StandardCharsets.UTF_8));
+        log.info("Preloaded {} PDF resources, {} bytes down to {}",
+                statics.length, originalBytes, bytes);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /** Digest of the preloaded assets as optimized; changes when any of them does. */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The bytes the PDF embeds for a template-relative path such as
+     * {@code static/tinkori.png}, as optimized at startup.
+     */
+    public byte[] asset(String path) {
+        return load(resolve(baseUrl, path));
+    }
+
+    /** Points the builder at the shared resources and caches. */
+    public PdfRendererBuilder configure(PdfRendererBuilder builder) {
+        return builder
+                .useUriResolver(this::resolve)
+                .useProtocolsStreamImplementation(this, "file", "jar")
+                .useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, fontMetrics);
+    }
+
+    /**
+     * Resolves {@code uri} against {@code base} the way openhtmltopdf does,
+     * then maps duplicate assets onto one URL. The renderer keeps one image
+     * XObject per URL, so identical files end up embedded once.
+     */
+    private String resolve(String base, String uri) {
+        String resolved;
+        try {
+            resolved = base == null ? new URL(uri).toExternalForm()
+                    : new URL(new URL(base), uri).toExternalForm();
+        } catch (MalformedURLException e) {
+            return uri;
+        }
+        return aliases.getOrDefault(resolved, resolved);
+    }
+
+    @Override
+    public FSStream getUrl(String url) {
+        byte[] data = load(url);
+        return new FSStream() {
+            @Override
+            public InputStream getStream() {
+                return new ByteArrayInputStream(data);
+            }
+
+            @Override
+            public Reader getReader() {
+                return new InputStreamReader(getStream(), StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private byte[] load(String url) {
+        byte[] data = resources.get(url);
+        if (data != null) {
+            return data;
+        }
+        data = read(url);
+        // only remember our own classpath resources, not whatever a template happens to link
+        if (url.startsWith(baseUrl)) {
+            resources.put(url, data);
+        }
+        return data;
+    }
+
+    private static byte[] read(String url) {
+        try (InputStream in = new URL(url).openStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read PDF resource " + url, e);
+        }
+    }
+}
@@ -1,52 +1,278 @@
 package com.invoice.generation.Service;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
 import com.invoice.generation.DTOs.InvoiceDTO;
-import com.invoice.generation.DTOs.ItemDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
 @Service
 public class PdfService {
 
+    private static final Logger log = LoggerFactory.getLogger(PdfService.class);
+
+    // shared by all threads; a virtual thread per request would never reuse a per-thread buffer
+    private static final ArrayBlockingQueue<PdfBuffer> BUFFERS = new ArrayBlockingQueue<>(8);
+
     private final TemplateEngine templateEngine;
+    private final PdfRenderResources resources;
+    private static final DateTimeFormatter INVOICE_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final DateTimeFormatter PRINTED_DATE = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final DateTimeFormatter PRINTED_DATE_TIME = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
+
+    private final InvoiceMetrics metrics;
+    private final PdfCache cache;
+    private final AdmissionControl admission;
 
-    public PdfService(TemplateEngine templateEngine) {
+    // invoices with more items than this are rendered chunkItems rows at a time
+    private final int largeItems;
+    private final int chunkItems;
+
+    public PdfService(TemplateEngine templateEngine, PdfRenderResources resources,
+            InvoiceMetrics metrics, PdfCache cache, AdmissionControl admission,
+            @Value("${invoice.pdf.large.items:1000}") int largeItems,
+            @Value("${invoice.pdf.large.chunk-items:500}") int chunkItems) {
         this.templateEngine = templateEngine;
+        this.resources = resources;
+        this.metrics = metrics;
+        this.cache = cache;
+        this.admission = admission;
+        this.largeItems = largeItems;
+        this.chunkItems = Math.max(1, chunkItems);
+    }
+
+    /**
+     * Parses the invoice template once at startup so the first request does
+     * not pay for it; Thymeleaf keeps the parsed template cached from then on.
+     */
+    @PostConstruct
+    public void warmTemplate() {
+        Context context = new Context();
+        context.setVariable("items", List.of());
+        context.setVariable("totals", new InvoiceTotalsDTO(0));
+        context.setVariable("adjustmentAmount", 0.0);
+        templateEngine.process("invoice", context);
+    }
+
+    /**
+     * The date printed on the invoice: its own {@code invoiceDate} (the day
+     * only) when the client sent one, so that re-rendering it later gives the
+     * same PDF, and otherwise the current date and time as before. Issued
+     * invoices keep the value in the store and are re-rendered with it.
+     */
+    public static String printedDate(InvoiceDTO invoice) {
+        if (invoice.invoiceDate != null && !invoice.invoiceDate.isBlank()) {
+            try {
+                return LocalDate.parse(invoice.invoiceDate.strip(), INVOICE_DATE).format(PRINTED_DATE);
+            } catch (DateTimeParseException e) {
+                // fall through to the render time
+            }
+        }
+        return LocalDateTime.now().format(PRINTED_DATE_TIME);
+    }
+
+    /** Whether the invoice is rendered in slices, see {@link #renderLarge}. */
+    public boolean isLarge(InvoiceDTO invoice) {
+        return invoice.items != null && invoice.items.size() > largeItems;
+    }
+
+    /**
+     * Writes the invoice into {@code out}, from the {@link PdfCache} when it
+     * has been rendered before. {@code out} is closed either way, as PDFBox
+     * does once the document has been written. Large invoices are streamed
+     * without a cached copy, which would have to be held in memory.
+     */
+    public void renderPdf(InvoiceDTO invoice, InvoiceTotalsDTO totals, OutputStream out) {
+        String date = printedDate(invoice);
+        renderPdf(invoice, totals, date, cache.key(invoice, totals, date), out);
+    }
+
+    /**
+     * As {@link #renderPdf(InvoiceDTO, InvoiceTotalsDTO, OutputStream)} for a
+     * stored invoice: printed with the date it was issued with, and cached
+     * under the {@code pdfRef} stored with it, so every later download of
+     * the same invoice is served from the cache.
+     */
+    public void renderStoredPdf(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, String pdfRef,
+            OutputStream out) {
+        renderPdf(invoice, totals, date, pdfRef != null ? pdfRef : cache.key(invoice, totals, date), out);
+    }
+
+    private void renderPdf(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, String cacheKey,
+            OutputStream out) {
+        String key = cache.enabled() && !isLarge(invoice) ? cacheKey : null;
+        byte[] cached = key == null ? null : cache.get(key);
+
+        if (cached != null) {
+            try (out) {
+                out.write(cached);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        if (key == null) {
+            render(invoice, totals, date, out);
+            return;
+        }
+
+        // streams as it renders and keeps a copy for the cache
+        PdfBuffer copy = PdfBuffer.borrow();
+        try {
+            render(invoice, totals, date, new TeeOutputStream(out, copy));
+            cache.put(key, copy.toByteArray());
+        } finally {
+            copy.release();
+        }
+    }
+
+    /**
+     * Renders the invoice and throws the result away, bypassing the cache,
+     * so the renderer's classes, fonts and images are loaded before the
+     * first real request.
+     */
+    public void warmUp(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        render(invoice, totals, printedDate(invoice), OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Renders under one of {@link AdmissionControl}'s render permits, which
+     * bounds how many documents are being built in memory at once.
+     *
+     * @throws AdmissionControl.OverloadedException when no permit came free in time
+     */
+    private void render(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, OutputStream out) {
+        render(invoice, totals, date, AdmissionControl.Lane.INTERACTIVE, out);
+    }
+
+    private void render(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, AdmissionControl.Lane lane,
+            OutputStream out) {
+        admission.render(lane, () -> {
+            renderPermitted(invoice, totals, date, out);
+            return null;
+        });
     }
 
-    public String generatePdf(InvoiceDTO invoice, double amount) {
+    private void renderPermitted(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, OutputStream out) {
 
-        System.out.println("========================================");
-        System.out.println("🔵 STEP 1: Starting PDF Generation");
-        System.out.println("========================================");
+        if (isLarge(invoice)) {
+            renderLarge(invoice, totals, date, out);
+            return;
+        }
 
-        String date = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm"));
+        String html = renderHtml(invoice, totals, date);
 
-        // Calculate subtotal
-        double subtotal = 0;
-        for (ItemDTO item : invoice.items) {
-            double itemTotal = item.price * item.quantity;
+        CountingOutputStream counted = new CountingOutputStream(out);
+        Timer.Sample sample = metrics.start();
+        try {
+            PdfRendererBuilder builder = resources.configure(new PdfRendererBuilder());
+            builder.withHtmlContent(html, resources.baseUrl());
+            builder.toStream(counted);
+            builder.run();
+            metrics.stop(sample, "invoice.pdf.render", invoice, "success");
+        } catch (Exception e) {
+            metrics.stop(sample, "invoice.pdf.render", invoice, "failure");
+            log.error("PDF render failed for status={} items={}",
+                    invoice.invoiceStatus, invoice.items.size(), e);
+            throw new RuntimeException("Failed to generate PDF", e);
+        }
 
-            if ("PERCENT".equals(item.discountType)) {
-                itemTotal -= (itemTotal * item.discount / 100);
-            } else {
-                itemTotal -= item.discount;
+        metrics.pdfSize(invoice, counted.count);
+        if (log.isDebugEnabled()) {
+            log.debug("PDF rendered status={} issuedBy={} items={} htmlChars={} bytes={}",
+                    invoice.invoiceStatus, invoice.issuedBy, invoice.items.size(),
+                    html.length(), counted.count);
+        }
+    }
+
+    /**
+     * Renders {@code chunkItems} rows at a time, each slice laid out as its
+     * own HTML document and appended to one PDF. Only the first slice has
+     * the letterhead and only the last one the totals. Page contents go to
+     * a scratch file until the document is saved, so the heap holds one
+     * slice's DOM and layout however many items there are.
+     */
+    private void renderLarge(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, OutputStream out) {
+        int count = invoice.items.size();
+
+        CountingOutputStream counted = new CountingOutputStream(out);
+        Timer.Sample sample = metrics.start();
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            for (int from = 0; from < count; from += chunkItems) {
+                String html = renderHtml(invoice, totals, date, from, Math.min(count, from + chunkItems));
+
+                PdfRendererBuilder builder = resources.configure(new PdfRendererBuilder());
+                builder.withHtmlContent(html, resources.baseUrl());
+                builder.usePDDocument(doc);
+                try (PdfBoxRenderer renderer = builder.buildPdfRenderer()) {
+                    renderer.layout();
+                    renderer.createPDFWithoutClosing();
+                }
             }
-            subtotal += itemTotal;
+            doc.save(counted);
+            metrics.stop(sample, "invoice.pdf.render", invoice, "success");
+        } catch (Exception e) {
+            metrics.stop(sample, "invoice.pdf.render", invoice, "failure");
+            log.error("PDF render failed for status={} items={}",
+                    invoice.invoiceStatus, count, e);
+            throw new RuntimeException("Failed to generate PDF", e);
         }
 
-        System.out.println("🔵 STEP 2: Creating Thymeleaf context");
+        metrics.pdfSize(invoice, counted.count);
+        log.info("Large PDF rendered status={} items={} chunks={} bytes={}",
+                invoice.invoiceStatus, count, (count + chunkItems - 1) / chunkItems, counted.count);
+    }
+
+    /** Processes the {@code invoice} template into the HTML the PDF is rendered from. */
+    public String renderHtml(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        return renderHtml(invoice, totals, printedDate(invoice));
+    }
+
+    private String renderHtml(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        return metrics.time("invoice.template.process", invoice,
+                () -> templateEngine.process("invoice", context(invoice, totals, date)));
+    }
+
+    /** HTML for items {@code from} to {@code to}, one slice of a large invoice. */
+    private String renderHtml(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date, int from, int to) {
+        Context context = context(invoice, totals.slice(from, to), date);
+        context.setVariable("items", invoice.items.subList(from, to));
+        context.setVariable("continued", from > 0);
+        context.setVariable("continues", to < invoice.items.size());
+        return metrics.time("invoice.template.process", invoice,
+                () -> templateEngine.process("invoice", context));
+    }
+
+    private static Context context(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+
         Context context = new Context();
-        context.setVariable("subtotal", subtotal);
+        context.setVariable("totals", totals);
         context.setVariable("applyOverallDiscount", invoice.applyOverallDiscount);
         context.setVariable("overallDiscount", invoice.overallDiscount);
         context.setVariable("overallDiscountType", invoice.overallDiscountType);
@@ -56,89 +282,188 @@ public class PdfService {
         context.setVariable("paymentDetails", invoice.paymentDetails);
         context.setVariable("issuedBy", invoice.issuedBy);
         context.setVariable("items", invoice.items);
-        context.setVariable("amount", amount);
         context.setVariable("name", invoice.customerName);
         context.setVariable("phone", invoice.customerPhone);
         context.setVariable("address", invoice.customerAddress);
         context.setVariable("date", date);
         context.setVariable("invoiceStatus", invoice.invoiceStatus);
         context.setVariable("ownerMessage", invoice.ownerMessage);
+        context.setVariable("invoiceNumber", invoice.invoiceNumber);
+        return context;
+    }
+
+    /**
+     * Returns the invoice as a PDF ready to be attached or streamed: straight
+     * from the {@link PdfCache} when possible, otherwise rendered into a
+     * pooled buffer. A large invoice skips the cache and is rendered into a
+     * temp file instead, so neither the render nor its result has to fit in
+     * the heap; close the result to delete it.
+     */
+    public RenderedPdf generatePdf(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        String date = printedDate(invoice);
+        if (isLarge(invoice)) {
+            return renderToFile(invoice, totals, date, AdmissionControl.Lane.INTERACTIVE);
+        }
 
-        System.out.println("🔵 STEP 3: Processing Thymeleaf template");
-        String html = templateEngine.process("invoice", context);
-        System.out.println("✅ HTML generated: " + html.length() + " characters");
+        String key = cache.enabled() ? cache.key(invoice, totals, date) : null;
+        byte[] cached = key == null ? null : cache.get(key);
+        if (cached != null) {
+            return RenderedPdf.of(cached);
+        }
 
-        // Use system temp directory
-        String tempDir = System.getProperty("java.io.tmpdir");
-        String fileName = "invoice_" + System.currentTimeMillis() + ".pdf";
-        String path = tempDir + File.separator + fileName;
+        byte[] pdf = renderToBytes(invoice, totals, date, AdmissionControl.Lane.INTERACTIVE);
+        if (key != null) {
+            cache.put(key, pdf);
+        }
+        return RenderedPdf.of(pdf);
+    }
 
-        System.out.println("🔵 STEP 4: PDF path: " + path);
+    /**
+     * The PDF of an invoice being issued, printed with {@code date}. It
+     * bypasses the {@link PdfCache}: every issued invoice carries a new
+     * number, so its key never comes up again on this path, and caching it
+     * would only push out entries that could be reused. Downloads of the
+     * stored invoice go through {@link #renderStoredPdf} and are cached
+     * there. Large invoices come back in a temp file, as from
+     * {@link #generatePdf}.
+     * <p>
+     * {@code lane} is {@link AdmissionControl.Lane#INTERACTIVE} when a client
+     * is waiting on the response and {@link AdmissionControl.Lane#BACKGROUND}
+     * for batch items and async jobs, which wait for a permit instead of
+     * being turned away.
+     */
+    public RenderedPdf issuePdf(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date,
+            AdmissionControl.Lane lane) {
+        if (isLarge(invoice)) {
+            return renderToFile(invoice, totals, date, lane);
+        }
+        return RenderedPdf.of(renderToBytes(invoice, totals, date, lane));
+    }
 
-        FileOutputStream os = null;
+    private byte[] renderToBytes(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date,
+            AdmissionControl.Lane lane) {
+        PdfBuffer buffer = PdfBuffer.borrow();
         try {
-            os = new FileOutputStream(path);
-            System.out.println("✅ FileOutputStream created");
-
-            PdfRendererBuilder builder = new PdfRendererBuilder();
-            String baseUrl = getClass().getResource("/").toExternalForm();
-            System.out.println("🔵 STEP 5: Base URL for resources: " + baseUrl);
-            
-            builder.withHtmlContent(html, baseUrl);
-            builder.toStream(os);
-            
-            System.out.println("🔵 STEP 6: Running PDF builder...");
-            builder.run();
-            System.out.println("✅ PDF builder completed");
+            render(invoice, totals, date, lane, buffer);
+            if (buffer.size() == 0) {
+                throw new RuntimeException("PDF is empty");
+            }
+            return buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
+    }
 
-            // ⚠️ CRITICAL: Explicitly flush and close the stream
-            System.out.println("🔵 STEP 7: Flushing stream...");
-            os.flush();
-            System.out.println("✅ Stream flushed");
-            
-            os.close();
-            os = null; // Prevent double-close in finally block
-            System.out.println("✅ Stream closed");
+    private RenderedPdf renderToFile(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date,
+            AdmissionControl.Lane lane) {
+        Path file;
+        try {
+            file = Files.createTempFile("invoice-", ".pdf");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a temp file for the PDF", e);
+        }
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                render(invoice, totals, date, lane, out);
+            }
+            return RenderedPdf.file(file);
+        } catch (IOException e) {
+            RenderedPdf.delete(file);
+            throw new UncheckedIOException("Cannot write the PDF to " + file, e);
+        } catch (RuntimeException e) {
+            RenderedPdf.delete(file);
+            throw e;
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌❌❌ PDF generation FAILED at runtime ❌❌❌");
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to generate PDF", e);
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                    System.out.println("🔵 Stream closed in finally block");
-                } catch (Exception e) {
-                    System.err.println("⚠️ Failed to close stream in finally: " + e.getMessage());
-                }
+    /** The {@link PdfCache} key of this invoice's PDF, kept with its stored record. */
+    public String pdfRef(InvoiceDTO invoice, InvoiceTotalsDTO totals) {
+        return pdfRef(invoice, totals, printedDate(invoice));
+    }
+
+    public String pdfRef(InvoiceDTO invoice, InvoiceTotalsDTO totals, String date) {
+        return cache.key(invoice, totals, date);
+    }
+
+    /** Name the PDF is attached or downloaded under: its number once issued, the time before that. */
+    public static String fileName(InvoiceDTO invoice) {
+        if (invoice.invoiceNumber != null && !invoice.invoiceNumber.isBlank()) {
+            return "invoice_" + invoice.invoiceNumber.strip() + ".pdf";
+        }
+        return "invoice_" + System.currentTimeMillis() + ".pdf";
+    }
+
+    /**
+     * Render buffer from a small pool shared by every thread. Keeps its
+     * capacity between invoices so a render does not regrow the array from
+     * 32 bytes every time; at most eight are kept idle, and one that grew past
+     * 2 MB for an unusually large PDF is dropped instead of returned. When
+     * the pool is empty a fresh buffer is made, so a burst never waits.
+     */
+    private static final class PdfBuffer extends ByteArrayOutputStream {
+
+        private static final int INITIAL_CAPACITY = 256 * 1024;
+        private static final int MAX_RETAINED_CAPACITY = 2 * 1024 * 1024;
+
+        PdfBuffer() {
+            super(INITIAL_CAPACITY);
+        }
+
+        static PdfBuffer borrow() {
+            PdfBuffer buffer = BUFFERS.poll();
+            return buffer == null ? new PdfBuffer() : buffer;
+        }
+
+        void release() {
+            if (buf.length <= MAX_RETAINED_CAPACITY) {
+                reset();
+                BUFFERS.offer(this);
             }
         }
+    }
+
+    /** Copies everything written to {@code out} into {@code copy}; closing only closes {@code out}. */
+    private static final class TeeOutputStream extends FilterOutputStream {
 
-        // ✅ VALIDATE: Check file after stream is closed
-        System.out.println("🔵 STEP 8: Validating PDF file...");
-        File pdfFile = new File(path);
-        
-        if (!pdfFile.exists()) {
-            System.err.println("❌ PDF file does NOT exist at: " + path);
-            throw new RuntimeException("PDF file was not created");
+        private final OutputStream copy;
+
+        TeeOutputStream(OutputStream out, OutputStream copy) {
+            super(out);
+            this.copy = copy;
         }
-        System.out.println("✅ PDF file exists");
 
-        long fileSize = pdfFile.length();
-        System.out.println("🔵 STEP 9: PDF file size: " + fileSize + " bytes");
-        
-        if (fileSize == 0) {
-            System.err.println("❌ PDF file is EMPTY (0 bytes)");
-            throw new RuntimeException("PDF file is empty");
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
         }
-        
-        System.out.println("✅✅✅ PDF GENERATION COMPLETE ✅✅✅");
-        System.out.println("📄 Path: " + path);
-        System.out.println("📊 Size: " + fileSize + " bytes");
-        System.out.println("========================================");
 
-        return path;
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+    }
+
+    /** Counts what PDFBox writes so the size can be recorded when streaming. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.invoice.generation.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A PDF ready to be attached, zipped or streamed. Ordinary invoices are held
+ * as bytes; a large one stays in the temp file it was rendered into, so it
+ * never has to fit in the heap, and the file is deleted on {@link #close()}.
+ */
+public final class RenderedPdf implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderedPdf.class);
+
+    private final byte[] bytes;
+    private final Path file;
+    private final long size;
+
+    private RenderedPdf(byte[] bytes, Path file, long size) {
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+    }
+
+    /** Bytes that may be shared with the {@link PdfCache}; they are never modified. */
+    public static RenderedPdf of(byte[] bytes) {
+        return new RenderedPdf(bytes, null, bytes.length);
+    }
+
+    /** Takes ownership of {@code file}, which is deleted on close. */
+    static RenderedPdf file(Path file) throws IOException {
+        return new RenderedPdf(null, file, Files.size(file));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean inMemory() {
+        return file == null;
+    }
+
+    public InputStream open() throws IOException {
+        return inMemory() ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    /** Copies the PDF into {@code out}, leaving it open. */
+    public void writeTo(OutputStream out) throws IOException {
+        if (inMemory()) {
+            out.write(bytes);
+        } else {
+            Files.copy(file, out);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            delete(file);
+        }
+    }
+
+    static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete rendered PDF {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.invoice.generation.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.api.client.http.HttpResponseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The Google Sheets {@link InvoiceSink}. Buffers invoice log rows and
+ * appends them in batches: rows are grouped per sheet and range, and each
+ * group goes out as one multi-row {@code values:append} once
+ * {@code invoice.sheets.batch-size} rows are pending or
+ * {@code invoice.sheets.flush-interval-ms} has passed, whichever comes
+ * first. Whatever is still pending is flushed on shutdown.
+ * <p>
+ * {@code values:append} is not idempotent, so only failures where Google
+ * most likely did not apply the rows are retried, with backoff: 429, 5xx,
+ * and connection-level errors. A read timeout is one of those, but the
+ * append may have gone through before it, so its retry can log the rows
+ * twice; that is preferred over losing them. Other 4xx responses (bad
+ * range, no access, no such sheet) will not get better and drop the rows
+ * straight away rather than hold up the flusher thread.
+ */
+@Service
+public class SheetsLogWriter implements InvoiceSink {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(SheetsLogWriter.class);
+
+    private record Target(String sheetName, String range) {
+
+    }
+
+    private final GoogleSheetsService googleSheetsService;
+    private final MeterRegistry registry;
+    private final InvoiceMetrics metrics;
+
+    private final int batchSize;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Object lock = new Object();
+    private Map<Target, List<List<Object>>> pending = new LinkedHashMap<>();
+    private int pendingRows;
+    private boolean flushScheduled;
+
+    private final Counter droppedRows;
+
+    public SheetsLogWriter(
+            GoogleSheetsService googleSheetsService,
+            MeterRegistry registry,
+            InvoiceMetrics metrics,
+            @Value("${invoice.sheets.batch-size:50}") int batchSize,
+            @Value("${invoice.sheets.flush-interval-ms:2000}") long flushIntervalMs,
+            @Value("${invoice.sheets.max-pending:10000}") int maxPending,
+            @Value("${invoice.sheets.max-attempts:4}") int maxAttempts,
+            @Value("${invoice.sheets.retry-backoff-ms:500}") long retryBackoffMs
+    ) {
+        this.googleSheetsService = googleSheetsService;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sheets-log-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(
+                this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("invoice.sheets.pending.rows", this, SheetsLogWriter::pendingRows)
+                .description("Log rows waiting to be appended to Google Sheets")
+                .register(registry);
+        this.droppedRows = Counter.builder("invoice.sheets.rows.dropped")
+                .description("Log rows discarded because the buffer was full or retries ran out")
+                .register(registry);
+    }
+
+    /** One row bound for {@code sheetName!range}. */
+    private record LogRow(String sheetName, String range, List<Object> values) {
+
+    }
+
+    @Override
+    public String name() {
+        return "sheets";
+    }
+
+    /** Queues the invoice's row on the sheet it was routed to, if any. */
+    @Override
+    public void accept(InvoiceEvent event) {
+        enqueueAll(rowsFor(List.of(event)), false);
+    }
+
+    /**
+     * Queues the rows of a whole batch at once and flushes straight away, so
+     * the batch costs one append per sheet no matter the batch size.
+     */
+    @Override
+    public void acceptAll(List<InvoiceEvent> events) {
+        enqueueAll(rowsFor(events), true);
+    }
+
+    /** The rows for these invoices, counted against {@code invoice.sheets.rows} per sheet. */
+    private List<LogRow> rowsFor(List<InvoiceEvent> events) {
+        List<LogRow> rows = new ArrayList<>(events.size());
+        for (InvoiceEvent event : events) {
+            if (event.sheet() == null) {
+                continue;
+            }
+            rows.add(new LogRow(event.sheet().name(), event.sheet().range(), event.row()));
+            metrics.sheetRows(event.invoice(), event.sheet().name(), 1);
+        }
+        return rows;
+    }
+
+    private void enqueueAll(List<LogRow> rows, boolean flushNow) {
+        synchronized (lock) {
+            for (LogRow row : rows) {
+                if (pendingRows >= maxPending) {
+                    droppedRows.increment();
+                    log.warn("Sheets log buffer full ({} rows), dropping row for {}", pendingRows, row.sheetName());
+                    continue;
+                }
+                pending.computeIfAbsent(new Target(row.sheetName(), row.range()), t -> new ArrayList<>())
+                        .add(row.values());
+                pendingRows++;
+            }
+
+            if ((flushNow || pendingRows >= batchSize) && pendingRows > 0 && !flushScheduled) {
+                flushScheduled = true;
+                flusher.execute(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Appends everything pending, one call per sheet and range. Only ever
+     * runs on the flusher thread, or on the caller during shutdown.
+     */
+    public void flush() {
+        Map<Target, List<List<Object>>> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pendingRows == 0) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            pendingRows = 0;
+        }
+
+        batch.forEach(this::append);
+    }
+
+    private void append(Target target, List<List<Object>> rows) {
+        DistributionSummary.builder("invoice.sheets.batch.rows")
+                .description("Rows sent per values:append call")
+                .tag("sheet", target.sheetName())
+                .register(registry)
+                .record(rows.size());
+
+        long backoff = retryBackoffMs;
+        for (int attempt = 1;; attempt++) {
+            long start = System.nanoTime();
+            try {
+                googleSheetsService.appendRows(target.sheetName(), target.range(), rows);
+                flushTimer(target, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            } catch (Exception e) {
+                flushTimer(target, "error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                if (!isTransient(e)) {
+                    droppedRows.increment(rows.size());
+                    log.error("Dropping {} rows for {}!{}, the append cannot succeed",
+                            rows.size(), target.sheetName(), target.range(), e);
+                    return;
+                }
+                if (attempt >= maxAttempts) {
+                    droppedRows.increment(rows.size());
+                    log.error("Giving up on {} rows for {}!{} after {} attempts",
+                            rows.size(), target.sheetName(), target.range(), attempt, e);
+                    return;
+                }
+                log.warn("Append to {} failed (attempt {}/{}), retrying in {} ms: {}",
+                        target.sheetName(), attempt, maxAttempts, backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    droppedRows.increment(rows.size());
+                    return;
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    /** 429 and 5xx responses, and failures to get any response at all. */
+    private static boolean isTransient(Exception e) {
+        if (e instanceof HttpResponseException response) {
+            int status = response.getStatusCode();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof IOException;
+    }
+
+    private Timer flushTimer(Target target, String outcome) {
+        return Timer.builder("invoice.sheets.flush")
+                .description("Latency of one batched values:append call")
+                .tag("sheet", target.sheetName())
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public int pendingRows() {
+        synchronized (lock) {
+            return pendingRows;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flush();
+    }
+}
@@ -0,0 +1,60 @@
+package com.invoice.generation.Service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.invoice.generation.DTOs.InvoiceEventDTO;
+
+/**
+ * POSTs every issued invoice as JSON to {@code invoice.sinks.webhook.url}.
+ * Off unless the URL is set. A non-2xx answer or a timeout counts as a
+ * failed delivery and is not retried.
+ */
+@Service
+public class WebhookSink implements InvoiceSink {
+
+    private final String url;
+    private final Duration timeout;
+    private final WebClient webClient;
+
+    public WebhookSink(
+            WebClient.Builder builder,
+            @Value("${invoice.sinks.webhook.url:}") String url,
+            @Value("${invoice.sinks.webhook.timeout:10s}") Duration timeout
+    ) {
+        this.url = url;
+        this.timeout = timeout;
+        this.webClient = builder.build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public boolean enabled() {
+        return url != null && !url.isBlank();
+    }
+
+    @Override
+    public void accept(InvoiceEvent event) {
+        InvoiceEventDTO body = new InvoiceEventDTO();
+        body.date = event.date();
+        body.sheet = event.sheet() == null ? null : event.sheet().name();
+        body.amount = event.totals().payableRupees();
+        body.invoice = event.invoice();
+
+        webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .toBodilessEntity()
+                .block(timeout);
+    }
+}
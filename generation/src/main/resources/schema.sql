@@ -0,0 +1,32 @@
+-- Local record of every issued invoice; Google Sheets is a downstream copy.
+CREATE TABLE IF NOT EXISTS invoice (
+    id                      BIGINT AUTO_INCREMENT PRIMARY KEY,
+    invoice_number          VARCHAR(32),   -- from InvoiceNumbers, unique across instances
+    issued_at               TIMESTAMP      NOT NULL,
+    invoice_date            DATE,
+    customer_name           VARCHAR(255),
+    customer_phone          VARCHAR(32),   -- national number, digits only, for lookups
+    customer_email          VARCHAR(320),  -- lower case, for lookups
+    status                  VARCHAR(64)    NOT NULL,
+    issued_by               VARCHAR(128),
+    item_count              INT            NOT NULL,
+    subtotal_paise          BIGINT         NOT NULL,
+    overall_discount_paise  BIGINT         NOT NULL,
+    adjustment_paise        BIGINT         NOT NULL,
+    payable_paise           BIGINT         NOT NULL,
+    pdf_ref                 VARCHAR(64),   -- PdfCache key of the rendered PDF
+    printed_date            VARCHAR(32),   -- date as printed on the PDF, so a re-render matches it
+    invoice_json            CLOB           NOT NULL
+);
+
+-- databases created before invoice numbers existed
+ALTER TABLE invoice ADD COLUMN IF NOT EXISTS invoice_number VARCHAR(32);
+-- and before the printed date was kept
+ALTER TABLE invoice ADD COLUMN IF NOT EXISTS printed_date VARCHAR(32);
+
+CREATE UNIQUE INDEX IF NOT EXISTS invoice_number_idx ON invoice (invoice_number);
+CREATE INDEX IF NOT EXISTS invoice_phone_idx  ON invoice (customer_phone, issued_at);
+CREATE INDEX IF NOT EXISTS invoice_email_idx  ON invoice (customer_email, issued_at);
+CREATE INDEX IF NOT EXISTS invoice_status_idx ON invoice (status, issued_at);
+CREATE INDEX IF NOT EXISTS invoice_issued_idx ON invoice (issued_at);
+CREATE INDEX IF NOT EXISTS invoice_date_idx   ON invoice (invoice_date);
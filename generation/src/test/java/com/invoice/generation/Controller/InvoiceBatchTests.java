@@ -0,0 +1,101 @@
+package com.invoice.generation.Controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.BatchResultDTO;
+
+@SpringBootTest(properties = {"invoice.warmup.enabled=false", "invoice.batch.max-invoices=3"})
+@AutoConfigureMockMvc
+class InvoiceBatchTests {
+
+    private static final String GOOD = "{'customerName':'%s','customerEmail':'a@example.com','invoiceStatus':'Placed',"
+            + "'items':[{'name':'Chair','price':100,'quantity':1}]}";
+    // no invoiceStatus, which the single-invoice endpoints answer with a 400
+    private static final String BAD = "{'customerName':'Bad','items':[{'name':'Chair','price':100,'quantity':1}]}";
+    // rejected part way through an item, so the rest of the element has to be skipped
+    private static final String BAD_ITEM = "{'invoiceStatus':'Placed','items':[{'price':'abc','name':'Chair'},"
+            + "{'name':'Desk'}],'customerName':'Bad'}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void oneBadInvoiceInAJsonListOnlyFailsItself() throws Exception {
+        String body = "[" + String.format(GOOD, "Asha") + "," + BAD_ITEM + "," + String.format(GOOD, "Ravi") + "]";
+        assertOnlyTheBadOneFailed(postBatch(body, MediaType.APPLICATION_JSON), "price must be a number");
+    }
+
+    @Test
+    void oneBadInvoiceInNdjsonOnlyFailsItself() throws Exception {
+        String body = String.format(GOOD, "Asha") + "\n" + BAD + "\n" + String.format(GOOD, "Ravi") + "\n";
+        assertOnlyTheBadOneFailed(postBatch(body, MediaType.APPLICATION_NDJSON), "invoiceStatus is required");
+    }
+
+    @Test
+    void aBatchOverTheLimitIssuesWhatFitsAndSaysWhy() throws Exception {
+        String body = (String.format(GOOD, "Asha") + "\n").repeat(4);
+        List<BatchResultDTO> results = postBatch(body, MediaType.APPLICATION_NDJSON);
+        assertEquals(4, results.size());
+        assertEquals(3, results.stream().filter(r -> "OK".equals(r.status)).count());
+        assertEquals("FAILED", results.get(3).status);
+        assertEquals("batch must not have more than 3 invoices", results.get(3).error);
+    }
+
+    @Test
+    void aBadSingleInvoiceIsStillRejected() throws Exception {
+        mvc.perform(post("/invoice/generate").contentType(MediaType.APPLICATION_JSON).content(BAD.replace('\'', '"')))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<BatchResultDTO> postBatch(String body, MediaType type) throws Exception {
+        MvcResult started = mvc.perform(post("/invoice/generate/batch")
+                        .contentType(type)
+                        .content(body.replace('\'', '"')))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String ndjson = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return ndjson.lines()
+                .map(this::read)
+                .sorted(Comparator.comparingInt(r -> r.index))
+                .toList();
+    }
+
+    private BatchResultDTO read(String line) {
+        try {
+            return objectMapper.readValue(line, BatchResultDTO.class);
+        } catch (Exception e) {
+            throw new AssertionError(line, e);
+        }
+    }
+
+    private static void assertOnlyTheBadOneFailed(List<BatchResultDTO> results, String error) {
+        assertEquals(3, results.size());
+        assertEquals("OK", results.get(0).status);
+        assertEquals("Asha", results.get(0).customerName);
+        assertEquals("FAILED", results.get(1).status);
+        assertEquals(error, results.get(1).error);
+        assertEquals("OK", results.get(2).status);
+        assertEquals("Ravi", results.get(2).customerName);
+    }
+}
@@ -0,0 +1,110 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdmissionControlTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void rateLimitsEachClientAfterItsBurst() {
+        AdmissionControl admission = new AdmissionControl(registry, 0.5, 3, 100, 1, 0, 1,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, admission.tryAcquire("10.0.0.1"));
+        }
+        long retryAfter = admission.tryAcquire("10.0.0.1");
+        assertTrue(retryAfter >= 1 && retryAfter <= 2, "retry after " + retryAfter);
+
+        // other clients have their own bucket
+        assertEquals(0, admission.tryAcquire("10.0.0.2"));
+        assertEquals(1, registry.get("invoice.admission.rejected").tag("reason", "rate_limited").counter().count());
+    }
+
+    @Test
+    void shedsRendersOnceThePermitsAndQueueAreTaken() throws Exception {
+        AdmissionControl admission = new AdmissionControl(registry, 0, 1, 100, 1, 0, 1,
+                Duration.ofMillis(200), Duration.ofSeconds(3));
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = pool.submit(() -> admission.render(() -> {
+                rendering.countDown();
+                await(release);
+                return "pdf";
+            }));
+            assertTrue(rendering.await(5, TimeUnit.SECONDS));
+            assertEquals(1.0, registry.get("invoice.render.active").gauge().value());
+            assertFalse(admission.shedLoad());
+
+            AdmissionControl.OverloadedException e = assertThrows(AdmissionControl.OverloadedException.class,
+                    () -> admission.render(() -> "second"));
+            assertEquals(3, e.getRetryAfterSeconds());
+
+            release.countDown();
+            assertEquals("pdf", first.get(5, TimeUnit.SECONDS));
+            assertEquals("third", admission.render(() -> "third"));
+            assertEquals(1, registry.get("invoice.admission.rejected").tag("reason", "overloaded").counter().count());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void backgroundRendersWaitWithinTheirShareOfThePermits() throws Exception {
+        AdmissionControl admission = new AdmissionControl(registry, 0, 1, 100, 2, 1, 1,
+                Duration.ofMillis(200), Duration.ofSeconds(1));
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = pool.submit(() -> admission.render(AdmissionControl.Lane.BACKGROUND, () -> {
+                rendering.countDown();
+                await(release);
+                return "first";
+            }));
+            assertTrue(rendering.await(5, TimeUnit.SECONDS));
+
+            // the second background render queues behind the first instead of failing
+            Future<String> second = pool.submit(() -> admission.render(AdmissionControl.Lane.BACKGROUND, () -> "second"));
+            Thread.sleep(300);
+            assertFalse(second.isDone());
+            assertEquals(1.0, registry.get("invoice.render.background.queued").gauge().value());
+            assertFalse(admission.shedLoad());
+
+            // the permit the batch cannot take is still there for a client
+            assertEquals("interactive", admission.render(() -> "interactive"));
+
+            release.countDown();
+            assertEquals("first", first.get(5, TimeUnit.SECONDS));
+            assertEquals("second", second.get(5, TimeUnit.SECONDS));
+            assertEquals(0.0, registry.get("invoice.render.active").gauge().value());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.netty.http.client.HttpClient;
+
+class EmailDispatcherTests {
+
+    @TempDir
+    Path outbox;
+
+    private HttpServer relay;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private volatile long answerAfterMs;
+
+    private SimpleMeterRegistry registry;
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void startRelay() throws IOException {
+        relay = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        relay.createContext("/send", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            int status = 200;
+            if (answerAfterMs > 0) {
+                // accepted, but the answer comes too late for the client
+                received.add(body);
+                sleep(answerAfterMs);
+            } else if (failuresLeft.getAndDecrement() > 0) {
+                status = failureStatus;
+            } else {
+                received.add(body);
+            }
+            byte[] resp = "{\"ok\":true}".getBytes();
+            exchange.sendResponseHeaders(status, resp.length);
+            exchange.getResponseBody().write(resp);
+            exchange.close();
+        });
+        relay.start();
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stop() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+        relay.stop(0);
+    }
+
+    private EmailDispatcher start() throws IOException {
+        return start(WebClient.create());
+    }
+
+    private EmailDispatcher start(WebClient webClient) throws IOException {
+        dispatcher = new EmailDispatcher(webClient, registry,
+                "http://127.0.0.1:" + relay.getAddress().getPort() + "/send",
+                outbox.toString(), 4, 3, 10);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static EmailDispatcher.BodyWriter body(String json) {
+        return out -> out.write(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void deliversAndClearsTheOutbox() throws Exception {
+        CompletableFuture<Void> sent = start().submit(body("{\"encryptedPayload\":\"a\"}"));
+        sent.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("{\"encryptedPayload\":\"a\"}"), received);
+        assertEquals(0, dispatcher.pending());
+        assertEquals(1, registry.get("invoice.email.send").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void retriesTransientFailures() throws Exception {
+        failuresLeft.set(2);
+        start();
+
+        dispatcher.submit(body("{}")).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, received.size());
+        assertEquals(2.0, registry.get("invoice.email.retries").counter().count());
+    }
+
+    @Test
+    void parksEmailsTheRelayRejects() throws Exception {
+        failuresLeft.set(1);
+        failureStatus = 400;
+        start();
+
+        CompletableFuture<Void> sent = dispatcher.submit(body("{}"));
+
+        assertThrows(ExecutionException.class, () -> sent.get(10, TimeUnit.SECONDS));
+        assertEquals(0, received.size());
+        assertEquals(1.0, registry.get("invoice.email.failures").counter().count());
+        try (var parked = Files.list(outbox.resolve("failed"))) {
+            assertEquals(1, parked.count());
+        }
+    }
+
+    @Test
+    void doesNotResendWhenTheRelayAnswersTooLate() throws Exception {
+        answerAfterMs = 1000;
+        start(WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(
+                        HttpClient.create().responseTimeout(Duration.ofMillis(200))))
+                .build());
+
+        CompletableFuture<Void> sent = dispatcher.submit(body("{}"));
+
+        assertThrows(ExecutionException.class, () -> sent.get(10, TimeUnit.SECONDS));
+        assertEquals(1, received.size());
+        assertEquals(0.0, registry.get("invoice.email.retries").counter().count());
+    }
+
+    @Test
+    void resendsWhatAPreviousRunLeftBehind() throws Exception {
+        Files.writeString(outbox.resolve("1-left-over.json"), "{\"from\":\"last run\"}");
+        Files.writeString(outbox.resolve("2-half-written.json.tmp"), "{\"from");
+
+        start();
+        for (int i = 0; i < 100 && dispatcher.pending() > 0; i++) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(List.of("{\"from\":\"last run\"}"), received);
+        try (var left = Files.list(outbox)) {
+            assertTrue(left.allMatch(p -> p.getFileName().toString().equals("failed")));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class EmailPayloadEncoderTests {
+
+    private static final String KEY = "0123456789abcdef";
+
+    @Test
+    void producesWhatTheRelayDecrypts() throws Exception {
+        byte[] pdf = new byte[300_001];
+        new Random(42).nextBytes(pdf);
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("to", "ananya@example.com");
+        fields.put("subject", "Thank You | Ananya | Placed | 17-10-2026 10:15");
+        fields.put("cc", " ");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new EmailPayloadEncoder(KEY).write(fields, "invoice.pdf",
+                new ByteArrayInputStream(pdf), pdf.length, out);
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode body = mapper.readTree(out.toByteArray());
+
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(KEY.getBytes(), "AES"));
+        byte[] json = cipher.doFinal(Base64.getDecoder().decode(body.get("encryptedPayload").asText()));
+
+        JsonNode payload = mapper.readTree(json);
+        assertEquals("ananya@example.com", payload.get("to").asText());
+        assertFalse(payload.has("cc"));
+        JsonNode attachment = payload.get("attachments").get(0);
+        assertEquals("invoice.pdf", attachment.get("fileName").asText());
+        assertArrayEquals(pdf, Base64.getDecoder().decode(attachment.get("fileBase64").asText()));
+    }
+}
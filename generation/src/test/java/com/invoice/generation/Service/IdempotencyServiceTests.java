@@ -0,0 +1,91 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IdempotencyServiceTests {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private final IdempotencyService idempotency = new IdempotencyService(new SimpleMeterRegistry(), 100);
+
+    @Test
+    void concurrentDuplicatesShareOneExecution() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> idempotency.execute("k", "body", TTL, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return "done";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("done", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+            assertEquals("done", idempotency.execute("k", "body", TTL, () -> "again"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresAreNotRemembered() {
+        assertThrows(IllegalStateException.class, () -> idempotency.execute("k", "body", TTL, () -> {
+            throw new IllegalStateException("relay down");
+        }));
+
+        assertEquals("ok", idempotency.execute("k", "body", TTL, () -> "ok"));
+    }
+
+    @Test
+    void keyReusedForAnotherBodyIsRejected() {
+        idempotency.execute("k", "body", TTL, () -> "first");
+
+        assertThrows(IdempotencyService.KeyReusedException.class,
+                () -> idempotency.execute("k", "other body", TTL, () -> "second"));
+    }
+
+    @Test
+    void expiredAndOverflowingEntriesAreDropped() throws Exception {
+        idempotency.execute("short", "body", Duration.ofMillis(1), () -> "first");
+        Thread.sleep(5);
+        assertEquals("second", idempotency.execute("short", "body", TTL, () -> "second"));
+
+        for (int i = 0; i < 150; i++) {
+            int n = i;
+            idempotency.execute("k" + i, "body", TTL, () -> n);
+        }
+        assertEquals(100, idempotency.size());
+        assertEquals(-1, (int) idempotency.execute("k0", "body", TTL, () -> -1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+class InvoiceBatchReaderTests {
+
+    private final ObjectReader reader = new ObjectMapper().registerModule(
+            new SimpleModule().addDeserializer(InvoiceDTO.class, new InvoiceDeserializer(2000, 3, 40)))
+            .readerFor(InvoiceDTO.class);
+
+    private InvoiceBatchReader open(String json, boolean array, long maxBytes, int maxInvoices) throws IOException {
+        byte[] body = json.replace('\'', '"').getBytes(StandardCharsets.UTF_8);
+        return new InvoiceBatchReader(reader.createParser(new ByteArrayInputStream(body)), reader, array, maxBytes,
+                maxInvoices);
+    }
+
+    @Test
+    void readsEachElementOnItsOwn() throws IOException {
+        String json = "[{'invoiceStatus':'Placed','items':[{}]},"
+                + "{'invoiceStatus':'Placed','items':[{'price':'abc','name':'Chair'},{}]},"
+                + "'text',null,{'invoiceStatus':'Paid','items':[{}]}]";
+        try (InvoiceBatchReader batch = open(json, true, 1 << 20, 5)) {
+            assertEquals("Placed", batch.next().invoice().invoiceStatus);
+            assertEquals("price must be a number", batch.next().error());
+            assertEquals("invoice must be a JSON object", batch.next().error());
+            assertEquals("invoice must be a JSON object", batch.next().error());
+            assertEquals("Paid", batch.next().invoice().invoiceStatus);
+            assertNull(batch.next());
+            assertNull(batch.next());
+        }
+
+        try (InvoiceBatchReader batch = open("{'items':[{}]}\n{'invoiceStatus':'Paid','items':[{}]}\n", false, 1 << 20, 5)) {
+            assertEquals("invoiceStatus is required", batch.next().error());
+            assertEquals("Paid", batch.next().invoice().invoiceStatus);
+            assertNull(batch.next());
+        }
+    }
+
+    @Test
+    void endsTheBatchOnBrokenJsonOrOverALimit() throws IOException {
+        try (InvoiceBatchReader batch = open("[{'invoiceStatus':'Paid','items':[{}]},{'items':", true, 1 << 20, 5)) {
+            assertEquals("Paid", batch.next().invoice().invoiceStatus);
+            assertThrows(JsonParseException.class, batch::next);
+        }
+
+        String invoice = "{'invoiceStatus':'Paid','items':[{}]}\n";
+        try (InvoiceBatchReader batch = open(invoice.repeat(10), false, invoice.length() * 3L, 100)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("Paid", batch.next().invoice().invoiceStatus);
+            }
+            assertThrows(InvoiceBatchReader.TooLargeException.class, batch::next);
+        }
+
+        try (InvoiceBatchReader batch = open(invoice.repeat(10), false, 1 << 20, 2)) {
+            assertFalse(batch.isEmpty());
+            batch.next();
+            batch.next();
+            assertEquals("batch must not have more than 2 invoices",
+                    assertThrows(InvoiceBatchReader.TooLargeException.class, batch::next).getMessage());
+        }
+    }
+}
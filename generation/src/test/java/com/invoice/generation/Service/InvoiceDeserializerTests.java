@@ -0,0 +1,72 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.invoice.generation.DTOs.InvoiceDTO;
+
+class InvoiceDeserializerTests {
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(
+            new SimpleModule().addDeserializer(InvoiceDTO.class, new InvoiceDeserializer(2000, 3, 40)));
+
+    private InvoiceDTO read(String json) throws Exception {
+        return mapper.readValue(json.replace('\'', '"').getBytes(StandardCharsets.UTF_8), InvoiceDTO.class);
+    }
+
+    private String rejected(String json) {
+        return assertThrows(JsonMappingException.class, () -> read(json)).getOriginalMessage();
+    }
+
+    private static final String ITEM = "{'name':'Chair','price':'1200.50','quantity':2,'discount':10,'discountType':'PERCENT'}";
+
+    @Test
+    void bindsEveryFieldAndSharesRepeatedValues() throws Exception {
+        String json = "{'customerName':'Asha','invoiceStatus':'Placed','paymentMethod':'UPI','unknown':{'a':[1,2]},"
+                + "'applyOverallDiscount':'true','enableLogging':false,'items':[" + ITEM + "," + ITEM + "]}";
+        InvoiceDTO first = read(json);
+        InvoiceDTO second = read(json);
+
+        assertEquals("Asha", first.customerName);
+        assertTrue(first.applyOverallDiscount);
+        assertFalse(first.enableLogging);
+        assertEquals(2, first.items.size());
+        assertEquals(1200.50, first.items.get(0).price);
+        assertEquals(2, first.items.get(0).quantity);
+
+        assertSame(first.paymentMethod, second.paymentMethod);
+        assertSame(first.items.get(0).discountType, second.items.get(1).discountType);
+        assertTrue(read("{'invoiceStatus':'Paid','items':[{}]}").enableLogging);
+        // numbers are assigned on issue, never taken from the request
+        assertNull(read("{'invoiceNumber':'INV-000001','invoiceStatus':'Paid','items':[{}]}").invoiceNumber);
+    }
+
+    @Test
+    void rejectsBadInvoicesWhileReading() {
+        assertEquals("invoiceStatus is required", rejected("{'items':[" + ITEM + "]}"));
+        assertEquals("items must not be empty", rejected("{'invoiceStatus':'Placed','items':[]}"));
+        assertEquals("items must not have more than 3 entries",
+                rejected("{'invoiceStatus':'Placed','items':[{},{},{},{}]}"));
+        assertEquals("quantity must be a whole number",
+                rejected("{'invoiceStatus':'Placed','items':[{'quantity':1.5}]}"));
+        assertEquals("price must be a number",
+                rejected("{'invoiceStatus':'Placed','items':[{'price':'abc'}]}"));
+        assertEquals("customerName must be a string",
+                rejected("{'invoiceStatus':'Placed','customerName':{},'items':[{}]}"));
+        assertEquals("ownerMessage must not be longer than 40 characters",
+                rejected("{'invoiceStatus':'Placed','ownerMessage':'" + "x".repeat(41) + "','items':[{}]}"));
+        assertEquals("invoice must not be larger than 2000 bytes",
+                rejected("{'invoiceStatus':'Placed','padding':'" + "x".repeat(3000) + "','items':[{}]}"));
+    }
+}
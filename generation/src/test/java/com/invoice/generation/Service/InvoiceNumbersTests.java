@@ -0,0 +1,71 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InvoiceNumbersTests {
+
+    @TempDir
+    Path dir;
+
+    private InvoiceNumbers numbers(int blockSize) {
+        return new InvoiceNumbers(new SimpleMeterRegistry(),
+                dir.resolve("invoice-number.seq").toString(), blockSize, "INV-");
+    }
+
+    @Test
+    void instancesSharingTheFileNeverRepeatANumber() throws Exception {
+        // two "replicas", each with several threads
+        List<InvoiceNumbers> replicas = List.of(numbers(7), numbers(7));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Long>>> taken = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                InvoiceNumbers replica = replicas.get(t % 2);
+                taken.add(pool.submit(() -> {
+                    List<Long> mine = new ArrayList<>();
+                    for (int i = 0; i < 500; i++) {
+                        mine.add(replica.next());
+                    }
+                    return mine;
+                }));
+            }
+
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> future : taken) {
+                List<Long> mine = future.get();
+                for (int i = 1; i < mine.size(); i++) {
+                    assertTrue(mine.get(i) > mine.get(i - 1), "numbers went backwards within a thread");
+                }
+                all.addAll(mine);
+            }
+            assertEquals(8 * 500, all.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void restartContinuesAfterTheReservedBlock() {
+        InvoiceNumbers first = numbers(100);
+        assertEquals("INV-000001", first.nextNumber());
+        assertEquals("INV-000002", first.nextNumber());
+
+        // the rest of the first block is skipped, never handed out twice
+        assertEquals(101, numbers(100).next());
+    }
+}
@@ -0,0 +1,83 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InvoiceServiceTests {
+
+    private final InvoiceService invoiceService
+            = new InvoiceService(new InvoiceMetrics(new SimpleMeterRegistry()));
+
+    private static ItemDTO item(double price, int quantity, double discount, String type) {
+        ItemDTO item = new ItemDTO();
+        item.name = "item";
+        item.price = price;
+        item.quantity = quantity;
+        item.discount = discount;
+        item.discountType = type;
+        return item;
+    }
+
+    private static InvoiceDTO invoice(ItemDTO... items) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.invoiceStatus = "Placed";
+        invoice.items = new ArrayList<>(List.of(items));
+        return invoice;
+    }
+
+    @Test
+    void pricesEveryLineAndTheTotalsInPaise() {
+        InvoiceDTO invoice = invoice(
+                item(349.5, 2, 10, "PERCENT"),
+                item(0.1, 3, 0, "FLAT"),
+                item(999.99, 1, 12.5, "PERCENT"),
+                item(120, 1, 20, "FLAT"));
+        invoice.applyOverallDiscount = true;
+        invoice.overallDiscount = 5;
+        invoice.overallDiscountType = "PERCENT";
+        invoice.adjustmentAmount = 0.7;
+        invoice.adjustmentAmountType = "FLAT";
+
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+
+        assertArrayEquals(new long[]{34_950, 10, 99_999, 12_000}, totals.unitPrice);
+        assertArrayEquals(new long[]{69_900, 30, 99_999, 12_000}, totals.lineTotal);
+        // 10% of 699.00, nothing, 12.5% of 999.99 rounded half-up, Rs 20 flat
+        assertArrayEquals(new long[]{62_910, 30, 87_499, 10_000}, totals.lineNet);
+        assertEquals(160_439, totals.subtotal);
+        assertEquals(8_022, totals.overallDiscount);
+        assertEquals(70, totals.adjustment);
+        assertEquals(152_347, totals.payable);
+        assertEquals("1523.47", totals.payableText());
+    }
+
+    @Test
+    void overallDiscountOnlyWhenApplied() {
+        InvoiceDTO invoice = invoice(item(100, 1, 0, "FLAT"));
+        invoice.overallDiscount = 50;
+        invoice.overallDiscountType = "PERCENT";
+
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+
+        assertEquals(0, totals.overallDiscount);
+        assertEquals("100.00", totals.payableText());
+    }
+
+    @Test
+    void formatsPaiseAsRupees() {
+        assertEquals("0.05", InvoiceTotalsDTO.rupees(5));
+        assertEquals("12.30", InvoiceTotalsDTO.rupees(1_230));
+        assertEquals("-3.07", InvoiceTotalsDTO.rupees(-307));
+    }
+}
@@ -0,0 +1,144 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.invoice.generation.Config.InvoiceThreads;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InvoiceSinksTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static InvoiceDTO invoice(String status, String issuedBy, boolean enableLogging) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.customerName = "Rao, \"Sons\"";
+        invoice.invoiceStatus = status;
+        invoice.issuedBy = issuedBy;
+        invoice.enableLogging = enableLogging;
+        ItemDTO item = new ItemDTO();
+        item.name = "Lamp";
+        item.price = 250;
+        item.quantity = 2;
+        invoice.items = new ArrayList<>(List.of(item));
+        return invoice;
+    }
+
+    private static InvoiceEvent event(String status, String issuedBy, boolean enableLogging) {
+        InvoiceTotalsDTO totals = new InvoiceTotalsDTO(1);
+        totals.payable = 50_000;
+        return InvoiceEvent.of(invoice(status, issuedBy, enableLogging), totals, "05-03-2024 10:15");
+    }
+
+    /** Records what it gets, optionally after waiting for {@code gate}, or always fails. */
+    private static final class TestSink implements InvoiceSink {
+
+        final String name;
+        final CountDownLatch gate;
+        final boolean fails;
+        final List<InvoiceEvent> received = new CopyOnWriteArrayList<>();
+
+        TestSink(String name, CountDownLatch gate, boolean fails) {
+            this.name = name;
+            this.gate = gate;
+            this.fails = fails;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void accept(InvoiceEvent event) throws Exception {
+            gate.await();
+            if (fails) {
+                throw new IllegalStateException(name + " is down");
+            }
+            received.add(event);
+        }
+    }
+
+    @Test
+    void routesEachInvoiceToOneSheetOrNone() {
+        assertEquals(LogSheet.SP_LOG, event("Placed", "Staff", true).sheet());
+        assertEquals(LogSheet.QUOTATION_LOG, event("quotation", "Staff", true).sheet());
+        assertEquals(LogSheet.CP_LOG, event("Placed", "Staff", false).sheet());
+        assertEquals(LogSheet.ORDER_LOG, event("Order_Placed", "Customer", true).sheet());
+
+        InvoiceEvent unrouted = event("Order_Placed", "Staff", true);
+        assertNull(unrouted.sheet());
+        assertNull(unrouted.row());
+    }
+
+    @Test
+    void slowAndFailingSinksDoNotHoldUpTheOthers() throws Exception {
+        CountDownLatch open = new CountDownLatch(0);
+        CountDownLatch stuck = new CountDownLatch(1);
+        TestSink fast = new TestSink("fast", open, false);
+        TestSink slow = new TestSink("slow", stuck, false);
+        TestSink broken = new TestSink("broken", open, true);
+        InvoiceSinks sinks = new InvoiceSinks(List.of(fast, slow, broken),
+                new InvoiceThreads(new MockEnvironment()), registry, 2);
+
+        for (int i = 1; i <= 5; i++) {
+            long start = System.nanoTime();
+            sinks.publish(event("Placed", "Staff", true));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "publish must not wait");
+            // let the quick sinks keep up, so only the stuck one backs up
+            for (int wait = 0; wait < 100 && (fast.received.size() < i || failures() < i); wait++) {
+                Thread.sleep(10);
+            }
+        }
+
+        assertEquals(5, fast.received.size());
+        assertEquals(5, failures());
+        // one invoice is being handled, two are queued, the rest did not fit
+        assertEquals(2.0, registry.get("invoice.sinks.dropped").tag("sink", "slow").counter().count());
+
+        stuck.countDown();
+        sinks.shutdown();
+        assertEquals(3, slow.received.size());
+    }
+
+    private long failures() {
+        Timer timer = registry.find("invoice.sinks.deliver").tag("sink", "broken").tag("outcome", "failure").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    void csvSinkAppendsTheSheetRowsPerFile(@TempDir Path dir) throws Exception {
+        CsvLogSink csv = new CsvLogSink(dir.toString());
+
+        csv.acceptAll(List.of(
+                event("Placed", "Staff", true),
+                event("Order_Placed", "Staff", true),
+                event("Placed", "Customer", true)));
+        csv.accept(event("Placed", "Staff", true));
+
+        List<String> sp = Files.readAllLines(dir.resolve("SP_LOG.csv"));
+        assertEquals(2, sp.size());
+        assertTrue(sp.get(0).startsWith("05-03-2024 10:15,Lamp x2 @ 250.0,\"Rao, \"\"Sons\"\"\",,,,Placed,500.00,"),
+                sp.get(0));
+        assertEquals(1, Files.readAllLines(dir.resolve("ORDER_LOG.csv")).size());
+        assertEquals(2, Files.list(dir).count());
+    }
+}
@@ -0,0 +1,85 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceStatsDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+class InvoiceStatsTests {
+
+    @TempDir
+    Path dir;
+
+    private InvoiceStats stats(int maxKeys) {
+        return new InvoiceStats(new ObjectMapper(), dir.resolve("invoice-stats.json").toString(),
+                Duration.ofHours(1), maxKeys, 400);
+    }
+
+    /** One item of {@code lineTotal} paise, {@code itemDiscount} off it, then {@code overallDiscount} off the invoice. */
+    private static InvoiceStore.Issued issued(String status, String paymentMethod, String issuedBy,
+            long lineTotal, long itemDiscount, long overallDiscount) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.invoiceStatus = status;
+        invoice.paymentMethod = paymentMethod;
+        invoice.issuedBy = issuedBy;
+        invoice.items = List.of();
+
+        InvoiceTotalsDTO totals = new InvoiceTotalsDTO(1);
+        totals.lineTotal[0] = lineTotal;
+        totals.lineNet[0] = lineTotal - itemDiscount;
+        totals.subtotal = totals.lineNet[0];
+        totals.overallDiscount = overallDiscount;
+        totals.payable = totals.subtotal - overallDiscount;
+        return new InvoiceStore.Issued(invoice, totals, null, null);
+    }
+
+    @Test
+    void addsUpPerDimension() {
+        InvoiceStats stats = stats(2);
+        stats.record(issued("Placed", "UPI", "Ravi", 100_00, 10_00, 0));
+        stats.record(issued("Placed", "Cash", "Ravi", 50_00, 0, 5_00));
+        stats.record(issued("Paid", "Card", null, 20_00, 0, 0));
+
+        InvoiceStatsDTO read = stats.read();
+        assertEquals(3, read.all.invoices);
+        assertEquals(155.0, read.all.amount);
+        assertEquals(15.0, read.all.discount);
+
+        assertEquals(2, read.byStatus.get("Placed").invoices);
+        assertEquals(135.0, read.byStatus.get("Placed").amount);
+        assertEquals(20.0, read.byIssuedBy.get(InvoiceStats.NONE).amount);
+        // a third payment method is over the two-key limit
+        assertEquals(20.0, read.byPaymentMethod.get(InvoiceStats.OTHER).amount);
+
+        String today = LocalDate.now(ZoneId.systemDefault()).toString();
+        assertEquals(3, read.byDay.get(today).invoices);
+    }
+
+    @Test
+    void snapshotSurvivesARestart() throws Exception {
+        InvoiceStats before = stats(1000);
+        before.record(issued("Placed", "UPI", "Ravi", 100_00, 10_00, 0));
+        before.shutdown();
+
+        InvoiceStats after = stats(1000);
+        after.record(issued("Placed", "UPI", "Ravi", 50_00, 0, 0));
+
+        InvoiceStatsDTO read = after.read();
+        assertEquals(before.read().since, read.since);
+        assertEquals(2, read.byPaymentMethod.get("UPI").invoices);
+        assertEquals(140.0, read.byIssuedBy.get("Ravi").amount);
+        assertEquals(10.0, read.all.discount);
+        after.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceRecordDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InvoiceStoreTests {
+
+    private InvoiceStore store;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        // the application mapper, with request limits the stored invoices are over
+        ObjectMapper mapper = new ObjectMapper().registerModule(
+                new SimpleModule().addDeserializer(InvoiceDTO.class, new InvoiceDeserializer(10, 0, 1)));
+        store = new InvoiceStore(new JdbcTemplate(dataSource), mapper, new SimpleMeterRegistry());
+    }
+
+    private static InvoiceStore.Issued issued(String phone, String email, String status, long payable) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.invoiceNumber = "INV-" + payable;
+        invoice.customerName = "Asha";
+        invoice.customerPhone = phone;
+        invoice.customerEmail = email;
+        invoice.invoiceStatus = status;
+        invoice.invoiceDate = "05-03-2024";
+        ItemDTO item = new ItemDTO();
+        item.name = "Chair";
+        item.price = payable / 100.0;
+        item.quantity = 1;
+        invoice.items = new ArrayList<>(List.of(item));
+
+        InvoiceTotalsDTO totals = new InvoiceTotalsDTO(1);
+        totals.subtotal = payable;
+        totals.payable = payable;
+        return new InvoiceStore.Issued(invoice, totals, "05 Mar 2024", "ref-" + payable);
+    }
+
+    @Test
+    void savesAndReadsBackTheFullInvoice() {
+        long id = store.save(issued("+91 98765-43210", "Asha@Example.com", "Placed", 152_347));
+
+        InvoiceRecordDTO record = store.get(id).orElseThrow();
+        assertEquals("9876543210", record.customerPhone);
+        assertEquals("asha@example.com", record.customerEmail);
+        assertEquals("05-03-2024", record.invoiceDate);
+        assertEquals(1523.47, record.amount);
+        assertEquals("ref-152347", record.pdfRef);
+        assertEquals("05 Mar 2024", record.printedDate);
+        assertEquals("Chair", record.invoice.items.get(0).name);
+        assertEquals("INV-152347", record.invoice.invoiceNumber);
+        assertTrue(store.get(id + 1).isEmpty());
+    }
+
+    @Test
+    void findsByNormalisedContactAndStatusNewestFirst() {
+        store.saveAll(List.of(
+                issued("9876543210", "a@x.com", "Placed", 100),
+                issued("+91 9876543210", "a@x.com", "Quotation", 200),
+                issued("1111111111", "b@x.com", "Placed", 300),
+                issued("98765 43210", "A@X.com", "Placed", 400)));
+
+        List<InvoiceRecordDTO> byPhone = store.find(
+                new InvoiceStore.Query("98765-43210", null, null, null, null, null, 50));
+        assertEquals(List.of(4.0, 2.0, 1.0), byPhone.stream().map(r -> r.amount).toList());
+        assertTrue(byPhone.stream().allMatch(r -> r.invoice == null));
+
+        List<InvoiceRecordDTO> placed = store.find(
+                new InvoiceStore.Query(null, " a@X.COM ", "Placed", LocalDate.now(), LocalDate.now(), null, 50));
+        assertEquals(List.of(4.0, 1.0), placed.stream().map(r -> r.amount).toList());
+
+        List<InvoiceRecordDTO> page = store.find(
+                new InvoiceStore.Query(null, null, null, null, null, placed.get(0).id, 2));
+        assertEquals(2, page.size());
+        assertTrue(page.stream().allMatch(r -> r.id < placed.get(0).id));
+
+        assertTrue(store.find(new InvoiceStore.Query(
+                null, null, null, LocalDate.now().plusDays(1), null, null, 50)).isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PdfCacheTests {
+
+    private static PdfRenderResources resources;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void loadResources() throws Exception {
+        resources = new PdfRenderResources(288);
+        resources.preload();
+    }
+
+    private PdfCache cache(long maxBytes, String dir) throws Exception {
+        return cache(registry, maxBytes, dir);
+    }
+
+    private static PdfCache cache(SimpleMeterRegistry registry, long maxBytes, String dir) throws Exception {
+        PdfCache cache = new PdfCache(registry, resources, maxBytes, 1024, dir, 1 << 20);
+        cache.start();
+        return cache;
+    }
+
+    private static InvoiceTotalsDTO totals(long payable) {
+        InvoiceTotalsDTO totals = new InvoiceTotalsDTO(0);
+        totals.payable = payable;
+        return totals;
+    }
+
+    @Test
+    void keyCoversWhatIsPrinted() throws Exception {
+        PdfCache cache = cache(1024, "");
+        InvoiceDTO invoice = PdfServiceTests.invoice(3);
+        InvoiceTotalsDTO totals = totals(10_000);
+        String key = cache.key(invoice, totals, "01 Jan 2026");
+
+        assertEquals(key, cache.key(PdfServiceTests.invoice(3), totals(10_000), "01 Jan 2026"));
+
+        invoice.customerEmail = "someone.else@example.com";
+        assertEquals(key, cache.key(invoice, totals, "01 Jan 2026"));
+
+        assertNotEquals(key, cache.key(invoice, totals, "02 Jan 2026"));
+        assertNotEquals(key, cache.key(invoice, totals(10_100), "01 Jan 2026"));
+        invoice.items.get(2).quantity++;
+        assertNotEquals(key, cache.key(invoice, totals, "01 Jan 2026"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondItsBytes() throws Exception {
+        PdfCache cache = cache(300, "");
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.put("c", new byte[100]);
+        cache.get("a");
+        cache.put("d", new byte[100]);
+
+        assertNull(cache.get("b"));
+        assertEquals(300, cache.memoryBytes());
+        assertEquals(1, registry.get("invoice.pdf.cache.lookups").tag("result", "memory").counter().count());
+    }
+
+    @Test
+    void diskTierSurvivesARestart() throws Exception {
+        byte[] pdf = {'%', 'P', 'D', 'F'};
+        // its own registry, the gauges of a cache are bound to that one instance
+        cache(new SimpleMeterRegistry(), 1024, dir.toString()).put("k", pdf);
+
+        PdfCache restarted = cache(1024, dir.toString());
+
+        assertArrayEquals(pdf, restarted.get("k"));
+        assertArrayEquals(pdf, restarted.get("k"));
+        assertEquals(1, registry.get("invoice.pdf.cache.lookups").tag("result", "disk").counter().count());
+        assertEquals(1.0, registry.get("invoice.pdf.cache.hit.ratio").gauge().value());
+    }
+}
@@ -0,0 +1,221 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import com.invoice.generation.DTOs.InvoiceDTO;
+import com.invoice.generation.DTOs.InvoiceTotalsDTO;
+import com.invoice.generation.DTOs.ItemDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PdfServiceTests {
+
+    /** Upper bound for a typical invoice; the full-size logo alone used to be 2 MB. */
+    private static final int MAX_PDF_BYTES = 150 * 1024;
+
+    private static PdfService pdfService;
+    private static InvoiceService invoiceService;
+    private static InvoicePreviewService previewService;
+    private static PdfService cachingPdfService;
+    private static PdfCache cache;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+
+        PdfRenderResources resources = new PdfRenderResources(288);
+        resources.preload();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InvoiceMetrics metrics = new InvoiceMetrics(registry);
+        AdmissionControl admission = new AdmissionControl(registry, 0, 1, 1, 2, 0, 4,
+                Duration.ofSeconds(30), Duration.ofSeconds(1));
+        pdfService = new PdfService(engine, resources, metrics,
+                new PdfCache(registry, resources, 0, 0, "", 0), admission, 1000, 500);
+        invoiceService = new InvoiceService(metrics);
+        previewService = new InvoicePreviewService(pdfService, resources, admission, metrics, 60, 4);
+
+        cache = new PdfCache(registry, resources, 16 << 20, 4 << 20, "", 0);
+        cache.start();
+        cachingPdfService = new PdfService(engine, resources, metrics, cache, admission, 1000, 500);
+    }
+
+    static InvoiceDTO invoice(int itemCount) {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.customerName = "Ananya Sen";
+        invoice.customerPhone = "9830000000";
+        invoice.customerAddress = "12 Lake Road, Kolkata";
+        invoice.customerEmail = "ananya@example.com";
+        invoice.invoiceStatus = "Placed";
+        invoice.paymentMethod = "CASH";
+        invoice.issuedBy = "Diptimoy";
+
+        List<ItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            ItemDTO item = new ItemDTO();
+            item.name = "Item " + i;
+            item.price = 100 + i;
+            item.quantity = 1 + i % 3;
+            item.discountType = "FLAT";
+            items.add(item);
+        }
+        invoice.items = items;
+        return invoice;
+    }
+
+    @Test
+    void invoicePdfStaysSmall() throws Exception {
+        InvoiceDTO invoice = invoice(10);
+        RenderedPdf pdf = pdfService.generatePdf(invoice, invoiceService.price(invoice));
+
+        assertTrue(pdf.inMemory());
+        assertTrue(pdf.size() < MAX_PDF_BYTES,
+                "PDF is " + pdf.size() + " bytes, expected under " + MAX_PDF_BYTES);
+
+        try (PDDocument doc = PDDocument.load(pdf.open())) {
+            PDResources resources = doc.getPage(0).getResources();
+            List<COSName> images = new ArrayList<>();
+            resources.getXObjectNames().forEach(images::add);
+            assertEquals(2, images.size(), "logo and signature should each be embedded once");
+        }
+    }
+
+    @Test
+    void issuedPdfsAreCachedOnlyOnceDownloadedFromTheStore() throws Exception {
+        InvoiceDTO invoice = invoice(3);
+        invoice.invoiceNumber = "INV-000042";
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+        String printed = PdfService.printedDate(invoice);
+        String pdfRef = cachingPdfService.pdfRef(invoice, totals, printed);
+
+        try (RenderedPdf issued = cachingPdfService.issuePdf(invoice, totals, printed, AdmissionControl.Lane.INTERACTIVE)) {
+            assertTrue(issued.size() > 0);
+        }
+        assertEquals(0, cache.memoryBytes(), "issuing must not fill the cache");
+
+        cachingPdfService.renderStoredPdf(invoice, totals, printed, pdfRef, OutputStream.nullOutputStream());
+        assertTrue(cache.get(pdfRef) != null, "a download is cached under the stored pdfRef");
+    }
+
+    @Test
+    void previewsUseTheSameTotalsAndTemplate() throws Exception {
+        InvoiceDTO invoice = invoice(3);
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+
+        String html = previewService.html(invoice, totals);
+        assertTrue(html.contains(totals.payableText()), "payable missing from preview");
+        assertFalse(html.contains("src=\"static/"), "assets should be inlined");
+        assertTrue(html.contains("src=\"data:image/png;base64,"));
+
+        byte[] png = previewService.png(invoice, totals);
+        BufferedImage page = ImageIO.read(new ByteArrayInputStream(png));
+        // A4 at 60 dpi
+        assertEquals(496, page.getWidth(), 2);
+        assertSame(png, previewService.png(invoice, totals));
+    }
+
+    /** Heap the large-invoice render has to fit in; a single-pass layout of 50k rows needs gigabytes. */
+    private static final String LARGE_INVOICE_HEAP = "-Xmx64m";
+
+    @Test
+    void largeInvoiceRendersInBoundedHeap(@TempDir Path dir) throws Exception {
+        File pdf = dir.resolve("large.pdf").toFile();
+        File issued = dir.resolve("issued.pdf").toFile();
+        Process render = new ProcessBuilder(
+                ProcessHandle.current().info().command().orElse("java"),
+                LARGE_INVOICE_HEAP, "-Djava.awt.headless=true",
+                "-cp", System.getProperty("java.class.path"),
+                PdfServiceTests.class.getName(), "50000", pdf.getPath(), issued.getPath())
+                .redirectErrorStream(true)
+                .redirectOutput(dir.resolve("render.log").toFile())
+                .start();
+        assertEquals(0, render.waitFor(), () -> log(dir));
+
+        InvoiceDTO invoice = invoice(50_000);
+        String payable = invoiceService.price(invoice).payableText();
+        try (PDDocument doc = PDDocument.load(pdf, MemoryUsageSetting.setupTempFileOnly())) {
+            int pages = doc.getNumberOfPages();
+            assertTrue(pages > 1000, "only " + pages + " pages");
+
+            PDFTextStripper text = new PDFTextStripper();
+            text.setEndPage(1);
+            String first = text.getText(doc);
+            assertTrue(first.contains("Bill To") && first.contains("Item 0"));
+
+            // the totals can push the footer onto a page of its own
+            text.setStartPage(pages - 1);
+            text.setEndPage(pages);
+            String last = text.getText(doc);
+            assertTrue(last.contains("Item 49999") && last.contains(payable), last);
+            assertFalse(last.contains("Bill To"));
+
+            // the issue path, as attached to the email, renders the same document
+            try (PDDocument attached = PDDocument.load(issued, MemoryUsageSetting.setupTempFileOnly())) {
+                assertEquals(pages, attached.getNumberOfPages());
+            }
+        }
+    }
+
+    private static String log(Path dir) {
+        try {
+            return Files.readString(dir.resolve("render.log"));
+        } catch (Exception e) {
+            return e.toString();
+        }
+    }
+
+    /**
+     * Renders an invoice with {@code args[0]} items, in the heap the test
+     * gives it: streamed into {@code args[1]} as for a download, and through
+     * issuePdf, as on the issue path, copied to {@code args[2]}.
+     */
+    public static void main(String[] args) throws Exception {
+        setUp();
+        InvoiceDTO invoice = invoice(Integer.parseInt(args[0]));
+        InvoiceTotalsDTO totals = invoiceService.price(invoice);
+        pdfService.renderPdf(invoice, totals, new FileOutputStream(args[1]));
+
+        try (RenderedPdf pdf = pdfService.issuePdf(invoice, totals, PdfService.printedDate(invoice),
+                AdmissionControl.Lane.BACKGROUND)) {
+            if (pdf.inMemory()) {
+                throw new AssertionError("large PDF was held in memory");
+            }
+            try (FileOutputStream out = new FileOutputStream(args[2])) {
+                pdf.writeTo(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.invoice.generation.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SheetsLogWriterTests {
+
+    /** One values:append call as seen by the stand-in Sheets API. */
+    record Append(String path, JsonNode values) {
+
+    }
+
+    private HttpServer server;
+    private final List<Append> appends = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger failureStatus = new AtomicInteger(503);
+
+    private GoogleSheetsService sheets;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            JsonNode body = new ObjectMapper().readTree(exchange.getRequestBody());
+            int status = 200;
+            if (failuresLeft.getAndDecrement() > 0) {
+                status = failureStatus.get();
+            } else {
+                appends.add(new Append(exchange.getRequestURI().getPath(), body.get("values")));
+            }
+            byte[] resp = "{}".getBytes();
+            exchange.sendResponseHeaders(status, resp.length);
+            exchange.getResponseBody().write(resp);
+            exchange.close();
+        });
+        server.start();
+
+        sheets = new GoogleSheetsService() {
+            @Override
+            protected HttpRequestFactory requestFactory() {
+                return new NetHttpTransport().createRequestFactory();
+            }
+        };
+        ReflectionTestUtils.setField(sheets, "SHEET_ID", "sheet");
+        ReflectionTestUtils.setField(sheets, "baseUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v4/spreadsheets/");
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private static InvoiceEvent event(LogSheet sheet, String value) {
+        return new InvoiceEvent(null, null, "05-03-2024 10:00", sheet, List.of(value));
+    }
+
+    private SheetsLogWriter writer(int batchSize) {
+        return new SheetsLogWriter(sheets, registry, new InvoiceMetrics(registry), batchSize, 60_000, 1000, 3, 10);
+    }
+
+    @Test
+    void groupsRowsPerSheetIntoOneAppend() throws Exception {
+        SheetsLogWriter writer = writer(100);
+
+        for (int i = 0; i < 5; i++) {
+            writer.accept(event(LogSheet.SP_LOG, "row" + i));
+        }
+        writer.accept(event(LogSheet.ORDER_LOG, "order"));
+        assertEquals(6, writer.pendingRows());
+
+        writer.shutdown();
+
+        assertEquals(2, appends.size());
+        assertEquals("/v4/spreadsheets/sheet/values/SP_LOG!A:P:append", appends.get(0).path());
+        assertEquals(5, appends.get(0).values().size());
+        assertEquals("row4", appends.get(0).values().get(4).get(0).asText());
+        assertEquals(1, appends.get(1).values().size());
+        assertEquals(0, writer.pendingRows());
+        assertEquals(2, registry.get("invoice.sheets.flush").tag("outcome", "success").timers().size());
+    }
+
+    @Test
+    void flushesAsSoonAsBatchIsFull() throws Exception {
+        SheetsLogWriter writer = writer(3);
+
+        for (int i = 0; i < 3; i++) {
+            writer.accept(event(LogSheet.CP_LOG, "row" + i));
+        }
+        for (int i = 0; i < 100 && appends.isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, appends.size());
+        assertEquals(3, appends.get(0).values().size());
+        writer.shutdown();
+    }
+
+    @Test
+    void retriesFailedAppends() throws Exception {
+        failuresLeft.set(2);
+        SheetsLogWriter writer = writer(100);
+
+        writer.accept(event(LogSheet.SP_LOG, "row"));
+        writer.shutdown();
+
+        assertEquals(1, appends.size());
+        assertEquals(0.0, registry.get("invoice.sheets.rows.dropped").counter().count());
+        assertEquals(2, registry.get("invoice.sheets.flush").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void dropsRowsOnceRetriesRunOut() throws Exception {
+        failuresLeft.set(10);
+        SheetsLogWriter writer = writer(100);
+
+        writer.accept(event(LogSheet.SP_LOG, "a"));
+        writer.accept(event(LogSheet.SP_LOG, "b"));
+        writer.shutdown();
+
+        assertEquals(0, appends.size());
+        assertEquals(2.0, registry.get("invoice.sheets.rows.dropped").counter().count());
+    }
+
+    @Test
+    void doesNotRetryAppendsThatCannotSucceed() throws Exception {
+        failuresLeft.set(10);
+        failureStatus.set(403);
+        SheetsLogWriter writer = writer(100);
+
+        writer.accept(event(LogSheet.SP_LOG, "a"));
+        writer.shutdown();
+
+        assertEquals(1, registry.get("invoice.sheets.flush").tag("outcome", "error").timer().count());
+        assertEquals(1.0, registry.get("invoice.sheets.rows.dropped").counter().count());
+    }
+}